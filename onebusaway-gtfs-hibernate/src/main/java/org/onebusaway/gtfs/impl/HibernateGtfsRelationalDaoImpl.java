@@ -299,6 +299,11 @@ public class HibernateGtfsRelationalDaoImpl implements GtfsMutableRelationalDao
     _ops.save(entity);
   }
 
+  @Override
+  public void saveEntities(Collection<?> entities) {
+    _ops.saveAll(entities);
+  }
+
   @Override
   public void saveOrUpdateEntity(Object entity) {
     _ops.saveOrUpdate(entity);
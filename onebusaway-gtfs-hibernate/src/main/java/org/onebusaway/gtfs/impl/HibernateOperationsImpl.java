@@ -178,6 +178,31 @@ public class HibernateOperationsImpl implements HibernateOperations {
     });
   }
 
+  @Override
+  public void saveAll(final Collection<?> entities) {
+    execute(new HibernateOperation() {
+      @Override
+      public Object doInHibernate(Session session) throws HibernateException,
+          SQLException {
+
+        for (Object entity : entities) {
+
+          session.save(entity);
+
+          _count++;
+
+          if (_count >= BUFFER_SIZE) {
+            session.flush();
+            session.clear();
+            _count = 0;
+          }
+        }
+
+        return null;
+      }
+    });
+  }
+
   @Override
   public void saveOrUpdate(final Object entity) {
     execute(new HibernateOperation() {
@@ -1,6 +1,7 @@
 package org.onebusaway.gtfs.services;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 
 import org.hibernate.SessionFactory;
@@ -31,6 +32,12 @@ public interface HibernateOperations {
 
   public void save(Object entity);
 
+  /**
+   * Same as calling {@link #save(Object)} for each entity, but within a single
+   * operation
+   */
+  public void saveAll(Collection<?> entities);
+
   public void saveOrUpdate(Object entity);
 
   public <T> void clearAllEntitiesForType(final Class<T> type);
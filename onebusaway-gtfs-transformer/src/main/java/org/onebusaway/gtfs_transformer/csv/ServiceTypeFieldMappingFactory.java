@@ -31,7 +31,7 @@ public class ServiceTypeFieldMappingFactory implements FieldMappingFactory {
       if (isMissingAndOptional(csvValues))
         return;
 
-      String scheduleType = csvValues.get(_csvFieldName).toString();
+      String scheduleType = getCsvValue(csvValues).toString();
       boolean isExpress = scheduleType.equals("E");
       object.setPropertyValue(_objFieldName, isExpress);
     }
@@ -55,7 +55,7 @@ public class MetroKCDataReader extends CsvEntityReader {
     DefaultEntitySchemaFactory schemaFactory = new DefaultEntitySchemaFactory();
 
     AnnotationDrivenEntitySchemaFactory entitySchemaFactory = new AnnotationDrivenEntitySchemaFactory();
-    entitySchemaFactory.addPackageToScan("org.onebusaway.kcmetro2gtfs.model");
+    entitySchemaFactory.addPackageToScan("org.onebusaway.gtfs_transformer.king_county_metro.model");
     schemaFactory.addFactory(entitySchemaFactory);
 
     return schemaFactory;
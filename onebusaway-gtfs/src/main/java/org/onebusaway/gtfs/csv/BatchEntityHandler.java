@@ -0,0 +1,21 @@
+package org.onebusaway.gtfs.csv;
+
+import java.util.List;
+
+/**
+ * Receives the entities read by a {@link CsvEntityReader} in batches rather
+ * than one at a time, for handlers such as entity stores that can process a
+ * batch more efficiently. Batches hold consecutive entities of a single file,
+ * in the order they were read, and a file's last batch is delivered when the
+ * file has been read completely.
+ * 
+ * @see CsvEntityReader#addBatchEntityHandler(BatchEntityHandler)
+ * @see CsvEntityReader#setBatchSize(int)
+ */
+public interface BatchEntityHandler {
+
+  /**
+   * @param entities the batch, which the handler may keep but must not modify
+   */
+  public void handleEntities(List<Object> entities);
+}
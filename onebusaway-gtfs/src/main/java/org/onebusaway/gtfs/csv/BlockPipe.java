@@ -0,0 +1,149 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+
+/**
+ * A bounded, single producer / single consumer queue of byte blocks, read on
+ * the consumer side as an {@link InputStream}. The producer blocks once the
+ * maximum number of blocks is buffered. Either side can abandon the pipe, after
+ * which writes are rejected so that the producer can stop early.
+ */
+class BlockPipe {
+
+  private final int _maxBlocks;
+
+  private final LinkedList<Block> _blocks = new LinkedList<Block>();
+
+  private boolean _finished = false;
+
+  private boolean _abandoned = false;
+
+  private IOException _failure;
+
+  public BlockPipe(int maxBlocks) {
+    _maxBlocks = maxBlocks;
+  }
+
+  /**
+   * Blocks while the pipe is full.
+   * 
+   * @return false if the pipe has been abandoned and the producer should stop
+   */
+  public synchronized boolean write(byte[] data, int length)
+      throws InterruptedException {
+    while (_blocks.size() >= _maxBlocks && !_abandoned)
+      wait();
+    if (_abandoned)
+      return false;
+    _blocks.add(new Block(data, length));
+    notifyAll();
+    return true;
+  }
+
+  public synchronized void finish() {
+    _finished = true;
+    notifyAll();
+  }
+
+  public synchronized void fail(IOException failure) {
+    _failure = failure;
+    _finished = true;
+    notifyAll();
+  }
+
+  public synchronized void abandon() {
+    _abandoned = true;
+    _blocks.clear();
+    notifyAll();
+  }
+
+  public InputStream getInputStream() {
+    return new PipeInputStream();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * @return the next block, or null at the end of the stream
+   */
+  private synchronized Block take() throws IOException {
+    try {
+      while (_blocks.isEmpty() && !_finished && !_abandoned)
+        wait();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    if (!_blocks.isEmpty()) {
+      Block block = _blocks.removeFirst();
+      notifyAll();
+      return block;
+    }
+    if (_failure != null)
+      throw new IOException("error reading prefetched data", _failure);
+    if (_abandoned)
+      throw new IOException("stream closed");
+    return null;
+  }
+
+  private static class Block {
+
+    private final byte[] data;
+
+    private final int length;
+
+    public Block(byte[] data, int length) {
+      this.data = data;
+      this.length = length;
+    }
+  }
+
+  private class PipeInputStream extends InputStream {
+
+    private Block _current;
+
+    private int _position = 0;
+
+    private boolean _endOfStream = false;
+
+    @Override
+    public int read() throws IOException {
+      if (!ensureData())
+        return -1;
+      return _current.data[_position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0)
+        return 0;
+      if (!ensureData())
+        return -1;
+      len = Math.min(len, _current.length - _position);
+      System.arraycopy(_current.data, _position, b, off, len);
+      _position += len;
+      return len;
+    }
+
+    @Override
+    public void close() throws IOException {
+      abandon();
+    }
+
+    private boolean ensureData() throws IOException {
+      while (!_endOfStream
+          && (_current == null || _position == _current.length)) {
+        _current = take();
+        _position = 0;
+        if (_current == null)
+          _endOfStream = true;
+      }
+      return !_endOfStream;
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link CsvInputSource} that can expose a resource directly as a
+ * {@link ByteBuffer}, allowing it to be tokenized in place by a
+ * {@link Utf8ByteBufferRowTokenizer}.
+ */
+public interface ByteBufferCsvInputSource extends CsvInputSource {
+
+  /**
+   * @param name the resource name
+   * @return the full contents of the resource, or null if the resource can
+   *         only be read as a stream
+   */
+  public ByteBuffer getResourceAsByteBuffer(String name) throws IOException;
+}
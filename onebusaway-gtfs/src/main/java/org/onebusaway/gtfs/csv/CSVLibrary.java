@@ -130,6 +130,15 @@ public class CSVLibrary {
 
   public static final List<String> parse(String line) {
 
+    /**
+     * Most rows have no quotes at all, in which case they can simply be split
+     * at each comma. String.indexOf() is an intrinsic that the JIT compiles to
+     * vectorized scanning, so this also finds the commas several characters at
+     * a time.
+     */
+    if (line.indexOf('"') == -1)
+      return split(line);
+
     StringBuilder token = new StringBuilder();
     List<StringBuilder> tokens = new ArrayList<StringBuilder>();
     if (line.length() > 0)
@@ -191,4 +200,22 @@ public class CSVLibrary {
       retro.add(b.toString());
     return retro;
   }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static List<String> split(String line) {
+    List<String> tokens = new ArrayList<String>();
+    if (line.length() == 0)
+      return tokens;
+    int from = 0;
+    int to;
+    while ((to = line.indexOf(',', from)) != -1) {
+      tokens.add(line.substring(from, to));
+      from = to + 1;
+    }
+    tokens.add(line.substring(from));
+    return tokens;
+  }
 }
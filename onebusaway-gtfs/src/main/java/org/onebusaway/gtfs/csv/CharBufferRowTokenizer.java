@@ -0,0 +1,295 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A {@link RowTokenizer} that reads input into a single reused
+ * <code>char[]</code> buffer and tokenizes each row in place. Field values are
+ * exposed as slices of that buffer through {@link CsvRowBuffer}, so no
+ * per-row or per-token objects are allocated.
+ *
+ * The CSV dialect is the same as {@link CSVLibrary#parse(String)}: rows are
+ * terminated by "\n", "\r" or "\r\n", fields are separated by ',' and a field
+ * that starts with a '"' is quoted, with '""' standing for a literal quote.
+ * Quoted values are unescaped in place, which is always possible since the
+ * unescaped value is never longer than its escaped form.
+ */
+public class CharBufferRowTokenizer implements RowTokenizer {
+
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private enum EParseState {
+    DATA, DATA_IN_QUOTES, END_QUOTE
+  };
+
+  private final Reader _reader;
+
+  private char[] _buffer;
+
+  /**
+   * Start of the unconsumed region of the buffer
+   */
+  private int _position = 0;
+
+  /**
+   * End of the valid region of the buffer
+   */
+  private int _limit = 0;
+
+  private boolean _endOfInput = false;
+
+  private boolean _started = false;
+
+  /**
+   * Set when the previous row was terminated by a '\r', in which case an
+   * immediately following '\n' belongs to the same line terminator
+   */
+  private boolean _skipLineFeed = false;
+
+  private int _lineNumber = 0;
+
+  public CharBufferRowTokenizer(Reader reader) {
+    this(reader, DEFAULT_BUFFER_SIZE);
+  }
+
+  public CharBufferRowTokenizer(Reader reader, int bufferSize) {
+    _reader = reader;
+    _buffer = new char[Math.max(bufferSize, 16)];
+  }
+
+  /**
+   * Tokenize an input that is already entirely in memory. The buffer is
+   * modified in place as quoted values are unescaped.
+   *
+   * @param buffer the characters of the input
+   * @param length the number of valid characters in the buffer
+   */
+  public CharBufferRowTokenizer(char[] buffer, int length) {
+    _reader = null;
+    _buffer = buffer;
+    _limit = length;
+    _endOfInput = true;
+  }
+
+  /****
+   * {@link RowTokenizer} Interface
+   ****/
+
+  @Override
+  public boolean readRow(CsvRowBuffer row) throws IOException {
+
+    if (!_started)
+      start();
+
+    if (_skipLineFeed) {
+      if (_position == _limit && !_endOfInput)
+        fill();
+      if (_position < _limit && _buffer[_position] == '\n')
+        _position++;
+      _skipLineFeed = false;
+    }
+
+    int end = findEndOfLine();
+    if (end == -1)
+      return false;
+
+    tokenize(_buffer, _position, end, row);
+    _lineNumber++;
+
+    if (end < _limit) {
+      _skipLineFeed = _buffer[end] == '\r';
+      _position = end + 1;
+    } else {
+      _position = end;
+    }
+
+    return true;
+  }
+
+  @Override
+  public int getLineNumber() {
+    return _lineNumber;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (_reader != null)
+      _reader.close();
+  }
+
+  /****
+   * Package Methods
+   ****/
+
+  /**
+   * Tokenize the characters in the range [from,to) of the specified buffer,
+   * which must not contain any line terminators, into the specified row.
+   */
+  static void tokenize(char[] buffer, int from, int to, CsvRowBuffer row) {
+    tokenize(buffer, from, to, row, containsQuote(buffer, from, to));
+  }
+
+  /**
+   * Same as {@link #tokenize(char[], int, int, CsvRowBuffer)}, for callers that
+   * already know whether the range contains a quote. When it doesn't, the row
+   * is simply split at each ',' without going through the quote-aware state
+   * machine.
+   */
+  static void tokenize(char[] buffer, int from, int to, CsvRowBuffer row,
+      boolean containsQuote) {
+
+    row.reset(buffer);
+
+    if (from == to)
+      return;
+
+    if (!containsQuote) {
+      int tokenStart = from;
+      for (int i = from; i < to; i++) {
+        if (buffer[i] == ',') {
+          row.addField(tokenStart, i - tokenStart);
+          tokenStart = i + 1;
+        }
+      }
+      row.addField(tokenStart, to - tokenStart);
+      return;
+    }
+
+    EParseState state = EParseState.DATA;
+    int tokenStart = from;
+    int write = from;
+
+    for (int read = from; read < to; read++) {
+      char c = buffer[read];
+      switch (state) {
+        case DATA:
+          switch (c) {
+            case '"':
+              if (write == tokenStart)
+                state = EParseState.DATA_IN_QUOTES;
+              else
+                buffer[write++] = c;
+              break;
+            case ',':
+              row.addField(tokenStart, write - tokenStart);
+              tokenStart = read + 1;
+              write = tokenStart;
+              break;
+            default:
+              buffer[write++] = c;
+              break;
+          }
+          break;
+        case DATA_IN_QUOTES:
+          switch (c) {
+            case '"':
+              state = EParseState.END_QUOTE;
+              break;
+            default:
+              buffer[write++] = c;
+              break;
+          }
+          break;
+        case END_QUOTE:
+          switch (c) {
+            case '"':
+              buffer[write++] = '"';
+              state = EParseState.DATA_IN_QUOTES;
+              break;
+            case ',':
+              row.addField(tokenStart, write - tokenStart);
+              tokenStart = read + 1;
+              write = tokenStart;
+              state = EParseState.DATA;
+              break;
+            default:
+              buffer[write++] = c;
+              state = EParseState.DATA;
+              break;
+          }
+          break;
+      }
+    }
+
+    row.addField(tokenStart, write - tokenStart);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void start() throws IOException {
+    _started = true;
+    if (_limit == 0 && !_endOfInput)
+      fill();
+    // Skip the initial UTF BOM, if present
+    if (_position < _limit && _buffer[_position] == '\uFEFF')
+      _position++;
+  }
+
+  /**
+   * @return the index of the line terminator ending the current row, _limit if
+   *         the row is terminated by the end of input, or -1 if there are no
+   *         more rows
+   */
+  private int findEndOfLine() throws IOException {
+
+    int scanned = _position;
+
+    while (true) {
+      char[] buffer = _buffer;
+      for (int i = scanned; i < _limit; i++) {
+        char c = buffer[i];
+        if (c == '\n' || c == '\r')
+          return i;
+      }
+
+      if (_endOfInput)
+        return _position < _limit ? _limit : -1;
+
+      int offset = _limit - _position;
+      fill();
+      scanned = _position + offset;
+    }
+  }
+
+  /**
+   * Compact the unconsumed region of the buffer to the front, growing the
+   * buffer if a single row doesn't fit, and read more input.
+   */
+  private void fill() throws IOException {
+
+    if (_position > 0) {
+      System.arraycopy(_buffer, _position, _buffer, 0, _limit - _position);
+      _limit -= _position;
+      _position = 0;
+    }
+
+    if (_limit == _buffer.length) {
+      char[] buffer = new char[_buffer.length * 2];
+      System.arraycopy(_buffer, 0, buffer, 0, _limit);
+      _buffer = buffer;
+    }
+
+    while (true) {
+      int n = _reader.read(_buffer, _limit, _buffer.length - _limit);
+      if (n == -1) {
+        _endOfInput = true;
+        return;
+      }
+      if (n > 0) {
+        _limit += n;
+        return;
+      }
+    }
+  }
+
+  private static boolean containsQuote(char[] buffer, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buffer[i] == '"')
+        return true;
+    }
+    return false;
+  }
+}
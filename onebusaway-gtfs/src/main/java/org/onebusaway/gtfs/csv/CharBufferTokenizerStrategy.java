@@ -0,0 +1,30 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * {@link RowTokenizerStrategy} backed by {@link CharBufferRowTokenizer}. Parses
+ * exactly the same dialect as {@link CsvTokenizerStrategy}, but without
+ * allocating a line string, token builders and token lists for every row.
+ */
+public class CharBufferTokenizerStrategy implements RowTokenizerStrategy {
+
+  @Override
+  public RowTokenizer createRowTokenizer(Reader reader) {
+    return new CharBufferRowTokenizer(reader);
+  }
+
+  @Override
+  public List<String> parse(String line) {
+    CsvRowBuffer row = new CsvRowBuffer();
+    char[] buffer = line.toCharArray();
+    CharBufferRowTokenizer.tokenize(buffer, 0, buffer.length, row);
+    return row.getValues();
+  }
+
+  @Override
+  public String format(Iterable<String> tokens) {
+    return CSVLibrary.getIterableAsCSV(tokens);
+  }
+}
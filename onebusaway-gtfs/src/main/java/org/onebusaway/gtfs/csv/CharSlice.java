@@ -0,0 +1,42 @@
+package org.onebusaway.gtfs.csv;
+
+/**
+ * A reusable {@link CharSequence} view of a range of a character buffer, used
+ * to hand out csv values without creating a string for each.
+ */
+class CharSlice implements CharSequence {
+
+  private char[] _buffer;
+
+  private int _offset;
+
+  private int _length;
+
+  public void set(char[] buffer, int offset, int length) {
+    _buffer = buffer;
+    _offset = offset;
+    _length = length;
+  }
+
+  @Override
+  public int length() {
+    return _length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= _length)
+      throw new IndexOutOfBoundsException(Integer.toString(index));
+    return _buffer[_offset + index];
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().substring(start, end);
+  }
+
+  @Override
+  public String toString() {
+    return new String(_buffer, _offset, _length);
+  }
+}
@@ -6,8 +6,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.zip.ZipFile;
 
 import org.onebusaway.gtfs.csv.exceptions.CsvEntityIOException;
@@ -23,8 +27,6 @@ public class CsvEntityReader {
 
   private EntitySchemaFactory _entitySchemaFactory = new DefaultEntitySchemaFactory();
 
-  private EntityHandlerImpl _handler = new EntityHandlerImpl();
-
   private CsvEntityContextImpl _context = new CsvEntityContextImpl();
 
   private CsvInputSource _source;
@@ -33,8 +35,30 @@ public class CsvEntityReader {
 
   private List<EntityHandler> _handlers = new ArrayList<EntityHandler>();
 
+  private List<BatchEntityHandler> _batchHandlers = new ArrayList<BatchEntityHandler>();
+
+  private List<CsvReadListener> _readListeners = new ArrayList<CsvReadListener>();
+
+  private int _batchSize = 10000;
+
   private boolean _trimValues = false;
 
+  private int _parallelism = 1;
+
+  private int _parallelChunkSize = 4 * 1024 * 1024;
+
+  private boolean _preserveOrder = true;
+
+  private ExecutorService _executor;
+
+  private StringPool _stringPool;
+
+  private CsvRowFilter _rowFilter = new CsvRowFilter();
+
+  public EntitySchemaFactory getEntitySchemaFactory() {
+    return _entitySchemaFactory;
+  }
+
   public void setEntitySchemaFactory(EntitySchemaFactory entitySchemaFactory) {
     _entitySchemaFactory = entitySchemaFactory;
   }
@@ -62,10 +86,127 @@ public class CsvEntityReader {
     _trimValues = trimValues;
   }
 
+  /**
+   * When greater than one, files read from an {@link InputStream} are split
+   * into chunks that are tokenized and bound to entities concurrently by this
+   * many threads. Entity handlers are still called from the reading thread, but
+   * field mappings and validators run on the worker threads, so any lookups
+   * they make (e.g. against the entity store in a GtfsReader) must be safe for
+   * concurrent reads. Parallel reading requires a {@link RowTokenizerStrategy}
+   * or the default {@link CsvTokenizerStrategy}; other tokenizer strategies
+   * are always read sequentially.
+   * 
+   * @param parallelism the number of worker threads
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("parallelism must be positive");
+    if (parallelism != _parallelism)
+      shutdownExecutor();
+    _parallelism = parallelism;
+  }
+
+  /**
+   * @param parallelChunkSize the target size, in bytes, of the chunks a file is
+   *          split into when reading in parallel
+   */
+  public void setParallelChunkSize(int parallelChunkSize) {
+    _parallelChunkSize = parallelChunkSize;
+  }
+
+  /**
+   * @param preserveOrder when false, entities read in parallel are passed to
+   *          the entity handlers one chunk at a time as chunks complete, rather
+   *          than in file order. Defaults to true.
+   */
+  public void setPreserveOrder(boolean preserveOrder) {
+    _preserveOrder = preserveOrder;
+  }
+
+  public StringPool getStringPool() {
+    return _stringPool;
+  }
+
+  /**
+   * @param stringPool when set, string values that end up stored in entities
+   *          are deduplicated through the pool, so that repeated values share
+   *          a single instance. Off by default.
+   */
+  public void setStringPool(StringPool stringPool) {
+    _stringPool = stringPool;
+  }
+
+  /**
+   * Skip rows of the specified entity type whose value in the specified csv
+   * column is rejected by the predicate. Rows are tested before an entity
+   * instance is created or any field mapping is applied. The ids of rejected
+   * rows are remembered, and rows of entity types read later that reference a
+   * rejected entity are rejected as well, so that rejecting a route also
+   * rejects its trips, and in turn their stop times. For the cascade to
+   * apply, entity types must be read in dependency order.
+   * 
+   * @param entityClass the entity type to filter
+   * @param csvFieldName the csv column to test
+   * @param predicate the test, passed null if the file has no such column
+   */
+  public void addRowPredicate(Class<?> entityClass, String csvFieldName,
+      CsvValuePredicate predicate) {
+    _rowFilter.addPredicate(entityClass, csvFieldName, predicate);
+  }
+
+  /**
+   * @return the raw csv ids of the rows of the specified entity type that have
+   *         been rejected by a row predicate, directly or by reference, since
+   *         the last call to {@link #clearRejectedIds()}. A
+   *         {@link org.onebusaway.gtfs.serialization.GtfsReader} clears them at
+   *         the start of each run, so they are those of the last load.
+   */
+  public Set<String> getRejectedIds(Class<?> entityClass) {
+    return _rowFilter.getRejectedIds(entityClass);
+  }
+
+  /**
+   * Forgets the ids rejected by row predicates, so that they don't cause rows
+   * of the next feed read to be rejected by reference
+   */
+  public void clearRejectedIds() {
+    _rowFilter.clearRejectedIds();
+  }
+
   public void addEntityHandler(EntityHandler handler) {
     _handlers.add(handler);
   }
 
+  /**
+   * Entities are passed to batch handlers after they have been passed to each
+   * {@link EntityHandler}, in batches of up to {@link #setBatchSize(int)}
+   * entities, with each file's last batch delivered once it has been read.
+   * If reading a file fails, the entities of its undelivered batch are
+   * dropped.
+   */
+  public void addBatchEntityHandler(BatchEntityHandler handler) {
+    _batchHandlers.add(handler);
+  }
+
+  /**
+   * @param batchSize the maximum number of entities passed to a
+   *          {@link BatchEntityHandler} at once. Defaults to 10000.
+   */
+  public void setBatchSize(int batchSize) {
+    if (batchSize < 1)
+      throw new IllegalArgumentException("batch size must be positive");
+    _batchSize = batchSize;
+  }
+
+  /**
+   * Read listeners are notified with the {@link CsvFileReadStatistics} of each
+   * file that is read. Phases are only timed when there is at least one
+   * listener.
+   */
+  public void addReadListener(CsvReadListener listener) {
+    _readListeners.add(listener);
+  }
+
   public CsvEntityContext getContext() {
     return _context;
   }
@@ -76,6 +217,25 @@ public class CsvEntityReader {
 
   public void readEntities(Class<?> entityClass, CsvInputSource source)
       throws IOException {
+
+    if (source instanceof ByteBufferCsvInputSource && _parallelism < 2
+        && isDefaultCsvDialect()) {
+      EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
+      if (!hasResourceForEntitySchema(source, schema))
+        return;
+      String name = schema.getFilename();
+      ByteBuffer buffer = ((ByteBufferCsvInputSource) source).getResourceAsByteBuffer(name);
+      if (buffer != null) {
+        CsvFileReadStatistics statistics = createStatistics(entityClass);
+        if (statistics != null)
+          statistics.addBytes(buffer.remaining());
+        readRows(entityClass, name, new Utf8ByteBufferRowTokenizer(buffer),
+            statistics);
+        fireFileRead(statistics);
+        return;
+      }
+    }
+
     InputStream is = openInputStreamForEntityClass(source, entityClass);
     if (is != null)
       readEntities(entityClass, is);
@@ -83,17 +243,47 @@ public class CsvEntityReader {
 
   public void readEntities(Class<?> entityClass, InputStream is)
       throws IOException, CsvEntityIOException {
-    readEntities(entityClass, new InputStreamReader(is, "UTF-8"));
+
+    CsvFileReadStatistics statistics = createStatistics(entityClass);
+    if (statistics != null)
+      is = new MeteredInputStream(is, statistics);
+
+    RowTokenizerStrategy parallelStrategy = getParallelTokenizerStrategy();
+    if (parallelStrategy != null)
+      readEntitiesInParallel(entityClass, is, parallelStrategy, statistics);
+    else
+      readEntities(entityClass, new InputStreamReader(is, "UTF-8"), statistics);
+
+    fireFileRead(statistics);
   }
 
   public void readEntities(Class<?> entityClass, Reader reader)
       throws IOException, CsvEntityIOException {
+    CsvFileReadStatistics statistics = createStatistics(entityClass);
+    readEntities(entityClass, reader, statistics);
+    fireFileRead(statistics);
+  }
+
+  private void readEntities(Class<?> entityClass, Reader reader,
+      CsvFileReadStatistics statistics) throws IOException,
+      CsvEntityIOException {
+
+    if (_tokenizerStrategy instanceof RowTokenizerStrategy) {
+      RowTokenizerStrategy strategy = (RowTokenizerStrategy) _tokenizerStrategy;
+      readRows(entityClass, reader.toString(),
+          strategy.createRowTokenizer(reader), statistics);
+      return;
+    }
 
     EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
+    EntityHandlerImpl handler = new EntityHandlerImpl();
 
     IndividualCsvEntityReader entityLoader = new IndividualCsvEntityReader(
-        _context, schema, _handler);
+        _context, schema, handler);
     entityLoader.setTrimValues(_trimValues);
+    entityLoader.setStringPool(_stringPool);
+    entityLoader.setRowFilter(getRowFilter());
+    entityLoader.setStatistics(statistics);
 
     BufferedReader lineReader = new BufferedReader(reader);
 
@@ -111,15 +301,33 @@ public class CsvEntityReader {
     int lineNumber = 1;
 
     try {
-      while ((line = lineReader.readLine()) != null) {
-        List<String> values = _tokenizerStrategy.parse(line);
-        entityLoader.handleLine(values);
-        lineNumber++;
+      if (statistics == null) {
+        while ((line = lineReader.readLine()) != null) {
+          List<String> values = _tokenizerStrategy.parse(line);
+          entityLoader.handleLine(values);
+          lineNumber++;
+        }
+        handler.flushBatch();
+      } else {
+        long tokenizeNanos = 0;
+        while (true) {
+          long start = System.nanoTime();
+          line = lineReader.readLine();
+          if (line == null)
+            break;
+          List<String> values = _tokenizerStrategy.parse(line);
+          tokenizeNanos += System.nanoTime() - start;
+          entityLoader.handleLine(values);
+          lineNumber++;
+        }
+        flushBatch(handler, statistics);
+        addTokenizeNanos(statistics, tokenizeNanos);
       }
     } catch (Exception ex) {
       throw new CsvEntityIOException(entityClass, reader.toString(),
           lineNumber, ex);
     } finally {
+      handler.discardBatch();
       try {
         lineReader.close();
       } catch (IOException ex) {
@@ -128,31 +336,226 @@ public class CsvEntityReader {
     }
   }
 
-  public InputStream openInputStreamForEntityClass(CsvInputSource source,
-      Class<?> entityClass) throws IOException {
+  /**
+   * Streaming equivalent of the line-by-line read loop, where rows are
+   * tokenized in place in a reused buffer instead of being materialized as a
+   * string per line and a list of strings per row.
+   */
+  private void readRows(Class<?> entityClass, String path,
+      RowTokenizer tokenizer, CsvFileReadStatistics statistics)
+      throws IOException, CsvEntityIOException {
 
     EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
+    EntityHandlerImpl handler = new EntityHandlerImpl();
+
+    IndividualCsvEntityReader entityLoader = new IndividualCsvEntityReader(
+        _context, schema, handler);
+    entityLoader.setTrimValues(_trimValues);
+    entityLoader.setStringPool(_stringPool);
+    entityLoader.setRowFilter(getRowFilter());
+    entityLoader.setStatistics(statistics);
 
+    CsvRowBuffer row = new CsvRowBuffer();
+
+    try {
+      if (statistics == null) {
+        while (tokenizer.readRow(row))
+          entityLoader.handleRow(row);
+        handler.flushBatch();
+      } else {
+        long tokenizeNanos = 0;
+        while (true) {
+          long start = System.nanoTime();
+          boolean read = tokenizer.readRow(row);
+          tokenizeNanos += System.nanoTime() - start;
+          if (!read)
+            break;
+          entityLoader.handleRow(row);
+        }
+        flushBatch(handler, statistics);
+        addTokenizeNanos(statistics, tokenizeNanos);
+      }
+    } catch (Exception ex) {
+      throw new CsvEntityIOException(entityClass, path,
+          tokenizer.getLineNumber(), ex);
+    } finally {
+      handler.discardBatch();
+      try {
+        tokenizer.close();
+      } catch (IOException ex) {
+
+      }
+    }
+  }
+
+  private void readEntitiesInParallel(Class<?> entityClass, InputStream is,
+      RowTokenizerStrategy tokenizerStrategy, CsvFileReadStatistics statistics)
+      throws IOException, CsvEntityIOException {
+
+    EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
+    EntityHandlerImpl handler = new EntityHandlerImpl();
+
+    ParallelCsvEntityReader reader = new ParallelCsvEntityReader(entityClass,
+        _context, schema, handler, tokenizerStrategy, getExecutor());
+    reader.setChunkSize(_parallelChunkSize);
+    reader.setMaxChunksInFlight(_parallelism * 2);
+    reader.setPreserveOrder(_preserveOrder);
+    reader.setTrimValues(_trimValues);
+    reader.setStringPool(_stringPool);
+    reader.setRowFilter(getRowFilter());
+    reader.setStatistics(statistics);
+
+    try {
+      reader.readEntities(is, is.toString());
+      if (statistics == null)
+        handler.flushBatch();
+      else
+        flushBatch(handler, statistics);
+    } finally {
+      handler.discardBatch();
+      try {
+        is.close();
+      } catch (IOException ex) {
+
+      }
+    }
+  }
+
+  /**
+   * @return statistics for a read of the entity class, or null if there are no
+   *         read listeners to report them to
+   */
+  private CsvFileReadStatistics createStatistics(Class<?> entityClass) {
+    if (_readListeners.isEmpty())
+      return null;
+    EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
+    return new CsvFileReadStatistics(entityClass, schema.getFilename());
+  }
+
+  private void fireFileRead(CsvFileReadStatistics statistics) {
+    if (statistics == null)
+      return;
+    statistics.finish();
+    for (CsvReadListener listener : _readListeners)
+      listener.handleFileRead(statistics);
+  }
+
+  private static void flushBatch(EntityHandlerImpl handler,
+      CsvFileReadStatistics statistics) {
+    long start = System.nanoTime();
+    handler.flushBatch();
+    statistics.addStoreNanos(System.nanoTime() - start);
+  }
+
+  /**
+   * Time spent reading rows includes the time spent reading the underlying
+   * input, which is already counted as I/O
+   */
+  private static void addTokenizeNanos(CsvFileReadStatistics statistics,
+      long readNanos) {
+    statistics.addTokenizeNanos(Math.max(0, readNanos - statistics.getIoNanos()));
+  }
+
+  private CsvRowFilter getRowFilter() {
+    return _rowFilter.isEmpty() ? null : _rowFilter;
+  }
+
+  private RowTokenizerStrategy getParallelTokenizerStrategy() {
+    if (_parallelism < 2)
+      return null;
+    if (_tokenizerStrategy instanceof RowTokenizerStrategy)
+      return (RowTokenizerStrategy) _tokenizerStrategy;
+    if (isDefaultCsvDialect())
+      return new CharBufferTokenizerStrategy();
+    return null;
+  }
+
+  /**
+   * @return true if the tokenizer strategy parses the csv dialect of
+   *         {@link CSVLibrary}, which the built-in row tokenizers share
+   */
+  private boolean isDefaultCsvDialect() {
+    Class<?> strategyType = _tokenizerStrategy.getClass();
+    return strategyType == CsvTokenizerStrategy.class
+        || strategyType == CharBufferTokenizerStrategy.class;
+  }
+
+  private boolean hasResourceForEntitySchema(CsvInputSource source,
+      EntitySchema schema) throws IOException {
     String name = schema.getFilename();
-    if (!_source.hasResource(name)) {
+    if (!source.hasResource(name)) {
       if (schema.isRequired())
-        throw new MissingRequiredEntityException(entityClass, name);
-      return null;
+        throw new MissingRequiredEntityException(schema.getEntityClass(), name);
+      return false;
     }
+    return true;
+  }
 
-    return _source.getResource(name);
+  private synchronized ExecutorService getExecutor() {
+    if (_executor == null)
+      _executor = new ForkJoinPool(_parallelism);
+    return _executor;
+  }
+
+  private synchronized void shutdownExecutor() {
+    if (_executor != null) {
+      _executor.shutdown();
+      _executor = null;
+    }
+  }
+
+  public InputStream openInputStreamForEntityClass(CsvInputSource source,
+      Class<?> entityClass) throws IOException {
+
+    EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
+
+    if (!hasResourceForEntitySchema(source, schema))
+      return null;
+
+    return source.getResource(schema.getFilename());
   }
 
   public void close() throws IOException {
+    shutdownExecutor();
     if (_source != null)
       _source.close();
   }
 
+  /**
+   * Passes the entities of a single read to the entity handlers, so that files
+   * can be read concurrently, each with its own batch
+   */
   private class EntityHandlerImpl implements EntityHandler {
 
+    private List<Object> _batch = null;
+
     public void handleEntity(Object entity) {
+
       for (EntityHandler handler : _handlers)
         handler.handleEntity(entity);
+
+      if (_batchHandlers.isEmpty())
+        return;
+
+      if (_batch == null)
+        _batch = new ArrayList<Object>(Math.min(_batchSize, 1024));
+      _batch.add(entity);
+
+      if (_batch.size() >= _batchSize)
+        flushBatch();
+    }
+
+    public void flushBatch() {
+      List<Object> batch = _batch;
+      _batch = null;
+      if (batch == null)
+        return;
+      for (BatchEntityHandler handler : _batchHandlers)
+        handler.handleEntities(batch);
+    }
+
+    public void discardBatch() {
+      _batch = null;
     }
   }
 }
@@ -0,0 +1,56 @@
+package org.onebusaway.gtfs.csv;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns a small, stable integer key to each csv field name. Field mappings
+ * resolve their key once, when they are created, and {@link CsvRowValues}
+ * looks up the keys of a file's header once per file, so that reading a value
+ * for a row is an array lookup rather than a string hash lookup.
+ */
+public final class CsvFieldKeys {
+
+  private static final Map<String, Integer> _keysByName = new ConcurrentHashMap<String, Integer>();
+
+  private static int _nextKey = 0;
+
+  private CsvFieldKeys() {
+
+  }
+
+  /**
+   * @param csvFieldName the csv field name
+   * @return the key for the field name, or -1 if the name is null
+   */
+  public static int getKey(String csvFieldName) {
+    if (csvFieldName == null)
+      return -1;
+    Integer key = _keysByName.get(csvFieldName);
+    if (key == null) {
+      synchronized (CsvFieldKeys.class) {
+        key = _keysByName.get(csvFieldName);
+        if (key == null) {
+          key = _nextKey++;
+          _keysByName.put(csvFieldName, key);
+        }
+      }
+    }
+    return key;
+  }
+
+  /**
+   * Looks up the key of a field name without registering it, for names such
+   * as those of a file's header that may never be looked up by key.
+   * 
+   * @param csvFieldName the csv field name
+   * @return the key for the field name, or -1 if the name is null or has no
+   *         key
+   */
+  public static int findKey(String csvFieldName) {
+    if (csvFieldName == null)
+      return -1;
+    Integer key = _keysByName.get(csvFieldName);
+    return key == null ? -1 : key;
+  }
+}
@@ -0,0 +1,173 @@
+package org.onebusaway.gtfs.csv;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What it took to read a single csv file: the number of rows and bytes read,
+ * the wall time of the read, and how the time was split between phases:
+ *
+ * <ul>
+ * <li>I/O: reading from the underlying input stream, including any
+ * decompression</li>
+ * <li>tokenizing: decoding and splitting rows into fields</li>
+ * <li>binding: creating entities and applying field mappings</li>
+ * <li>validation: row predicates and entity validators</li>
+ * <li>store: the entity handlers and batch entity handlers, typically the
+ * entity store</li>
+ * </ul>
+ *
+ * When a file is read in parallel (see
+ * {@link CsvEntityReader#setParallelism(int)}), tokenizing and binding times
+ * are summed over the worker threads and so can exceed the wall time.
+ *
+ * @see CsvReadListener
+ */
+public class CsvFileReadStatistics {
+
+  private final Class<?> _entityClass;
+
+  private final String _filename;
+
+  private final long _startTime = System.nanoTime();
+
+  private long _rows = 0;
+
+  private long _bytes = 0;
+
+  private long _wallNanos = 0;
+
+  private long _ioNanos = 0;
+
+  private long _tokenizeNanos = 0;
+
+  private long _bindingNanos = 0;
+
+  private long _validationNanos = 0;
+
+  private long _storeNanos = 0;
+
+  public CsvFileReadStatistics(Class<?> entityClass, String filename) {
+    _entityClass = entityClass;
+    _filename = filename;
+  }
+
+  public Class<?> getEntityClass() {
+    return _entityClass;
+  }
+
+  public String getFilename() {
+    return _filename;
+  }
+
+  /**
+   * @return the number of data rows read, not including the header or empty
+   *         rows, but including rows rejected by a row predicate
+   */
+  public long getRows() {
+    return _rows;
+  }
+
+  public long getBytes() {
+    return _bytes;
+  }
+
+  public long getWallNanos() {
+    return _wallNanos;
+  }
+
+  public long getIoNanos() {
+    return _ioNanos;
+  }
+
+  public long getTokenizeNanos() {
+    return _tokenizeNanos;
+  }
+
+  public long getBindingNanos() {
+    return _bindingNanos;
+  }
+
+  public long getValidationNanos() {
+    return _validationNanos;
+  }
+
+  public long getStoreNanos() {
+    return _storeNanos;
+  }
+
+  /**
+   * @return the number of rows read per second of wall time
+   */
+  public double getRowsPerSecond() {
+    if (_wallNanos <= 0)
+      return 0;
+    return _rows * (double) TimeUnit.SECONDS.toNanos(1) / _wallNanos;
+  }
+
+  @Override
+  public String toString() {
+    return _filename + ": rows=" + _rows + " bytes=" + _bytes + " wall="
+        + millis(_wallNanos) + "ms io=" + millis(_ioNanos) + "ms tokenize="
+        + millis(_tokenizeNanos) + "ms binding=" + millis(_bindingNanos)
+        + "ms validation=" + millis(_validationNanos) + "ms store="
+        + millis(_storeNanos) + "ms rows/s=" + Math.round(getRowsPerSecond());
+  }
+
+  /****
+   * Package Methods
+   ****/
+
+  void addRow() {
+    _rows++;
+  }
+
+  void addBytes(long bytes) {
+    _bytes += bytes;
+  }
+
+  void addIoNanos(long nanos) {
+    _ioNanos += nanos;
+  }
+
+  void addTokenizeNanos(long nanos) {
+    _tokenizeNanos += nanos;
+  }
+
+  void addBindingNanos(long nanos) {
+    _bindingNanos += nanos;
+  }
+
+  void addValidationNanos(long nanos) {
+    _validationNanos += nanos;
+  }
+
+  void addStoreNanos(long nanos) {
+    _storeNanos += nanos;
+  }
+
+  /**
+   * Adds the rows and phase times of a part of the file read separately, such
+   * as a chunk read on a worker thread
+   */
+  void add(CsvFileReadStatistics statistics) {
+    _rows += statistics._rows;
+    _bytes += statistics._bytes;
+    _ioNanos += statistics._ioNanos;
+    _tokenizeNanos += statistics._tokenizeNanos;
+    _bindingNanos += statistics._bindingNanos;
+    _validationNanos += statistics._validationNanos;
+    _storeNanos += statistics._storeNanos;
+  }
+
+  void finish() {
+    _wallNanos = System.nanoTime() - _startTime;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
@@ -0,0 +1,14 @@
+package org.onebusaway.gtfs.csv;
+
+/**
+ * Notified by a {@link CsvEntityReader} each time a file has been read
+ * successfully. Files can be read concurrently, so implementations must be
+ * thread-safe.
+ *
+ * @see CsvEntityReader#addReadListener(CsvReadListener)
+ * @see CsvReadMonitor
+ */
+public interface CsvReadListener {
+
+  public void handleFileRead(CsvFileReadStatistics statistics);
+}
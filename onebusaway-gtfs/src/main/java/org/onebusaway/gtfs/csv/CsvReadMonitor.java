@@ -0,0 +1,164 @@
+package org.onebusaway.gtfs.csv;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A {@link CsvReadListener} that totals the statistics of every file read and
+ * exposes them as a JMX MBean, so that loads can be monitored in production
+ * with standard JMX tools.
+ *
+ * <pre>
+ * CsvReadMonitor monitor = new CsvReadMonitor();
+ * monitor.register(new ObjectName(CsvReadMonitor.DEFAULT_OBJECT_NAME));
+ * reader.addReadListener(monitor);
+ * </pre>
+ */
+public class CsvReadMonitor implements CsvReadListener, CsvReadMonitorMBean {
+
+  public static final String DEFAULT_OBJECT_NAME = "org.onebusaway.gtfs.csv:type=CsvReadMonitor";
+
+  private long _fileCount = 0;
+
+  private long _rows = 0;
+
+  private long _bytes = 0;
+
+  private long _wallNanos = 0;
+
+  private long _ioNanos = 0;
+
+  private long _tokenizeNanos = 0;
+
+  private long _bindingNanos = 0;
+
+  private long _validationNanos = 0;
+
+  private long _storeNanos = 0;
+
+  private Map<String, CsvFileReadStatistics> _lastReadsByFilename = new LinkedHashMap<String, CsvFileReadStatistics>();
+
+  /**
+   * Registers the monitor with the platform MBean server
+   */
+  public void register(ObjectName name) throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    server.registerMBean(this, name);
+  }
+
+  public void unregister(ObjectName name) throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    server.unregisterMBean(name);
+  }
+
+  /****
+   * {@link CsvReadListener} Interface
+   ****/
+
+  @Override
+  public synchronized void handleFileRead(CsvFileReadStatistics statistics) {
+    _fileCount++;
+    _rows += statistics.getRows();
+    _bytes += statistics.getBytes();
+    _wallNanos += statistics.getWallNanos();
+    _ioNanos += statistics.getIoNanos();
+    _tokenizeNanos += statistics.getTokenizeNanos();
+    _bindingNanos += statistics.getBindingNanos();
+    _validationNanos += statistics.getValidationNanos();
+    _storeNanos += statistics.getStoreNanos();
+    _lastReadsByFilename.put(statistics.getFilename(), statistics);
+  }
+
+  /****
+   * {@link CsvReadMonitorMBean} Interface
+   ****/
+
+  @Override
+  public synchronized long getFileCount() {
+    return _fileCount;
+  }
+
+  @Override
+  public synchronized long getRowCount() {
+    return _rows;
+  }
+
+  @Override
+  public synchronized long getByteCount() {
+    return _bytes;
+  }
+
+  @Override
+  public synchronized long getWallTime() {
+    return millis(_wallNanos);
+  }
+
+  @Override
+  public synchronized long getIoTime() {
+    return millis(_ioNanos);
+  }
+
+  @Override
+  public synchronized long getTokenizeTime() {
+    return millis(_tokenizeNanos);
+  }
+
+  @Override
+  public synchronized long getBindingTime() {
+    return millis(_bindingNanos);
+  }
+
+  @Override
+  public synchronized long getValidationTime() {
+    return millis(_validationNanos);
+  }
+
+  @Override
+  public synchronized long getStoreTime() {
+    return millis(_storeNanos);
+  }
+
+  @Override
+  public synchronized double getRowsPerSecond() {
+    if (_wallNanos <= 0)
+      return 0;
+    return _rows * (double) TimeUnit.SECONDS.toNanos(1) / _wallNanos;
+  }
+
+  @Override
+  public synchronized String[] getLastFileReads() {
+    String[] reads = new String[_lastReadsByFilename.size()];
+    int index = 0;
+    for (CsvFileReadStatistics statistics : _lastReadsByFilename.values())
+      reads[index++] = statistics.toString();
+    return reads;
+  }
+
+  @Override
+  public synchronized void reset() {
+    _fileCount = 0;
+    _rows = 0;
+    _bytes = 0;
+    _wallNanos = 0;
+    _ioNanos = 0;
+    _tokenizeNanos = 0;
+    _bindingNanos = 0;
+    _validationNanos = 0;
+    _storeNanos = 0;
+    _lastReadsByFilename.clear();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
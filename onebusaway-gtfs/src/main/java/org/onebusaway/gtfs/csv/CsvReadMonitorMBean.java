@@ -0,0 +1,38 @@
+package org.onebusaway.gtfs.csv;
+
+/**
+ * The JMX management interface of {@link CsvReadMonitor}. Times are in
+ * milliseconds.
+ */
+public interface CsvReadMonitorMBean {
+
+  public long getFileCount();
+
+  public long getRowCount();
+
+  public long getByteCount();
+
+  public long getWallTime();
+
+  public long getIoTime();
+
+  public long getTokenizeTime();
+
+  public long getBindingTime();
+
+  public long getValidationTime();
+
+  public long getStoreTime();
+
+  /**
+   * @return rows read per second of wall time, over all files
+   */
+  public double getRowsPerSecond();
+
+  /**
+   * @return a summary of the most recent read of each file
+   */
+  public String[] getLastFileReads();
+
+  public void reset();
+}
@@ -0,0 +1,149 @@
+package org.onebusaway.gtfs.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single tokenized CSV row, expressed as offset / length slices into a shared
+ * character buffer. Instances are reused from row to row by a
+ * {@link RowTokenizer}, so the slices are only valid until the next row is
+ * read. {@link String} values are only created when {@link #getValue(int)} is
+ * actually called for a field, and are then cached for the rest of the row.
+ * 
+ * @see RowTokenizer
+ */
+public class CsvRowBuffer {
+
+  private static final int INITIAL_CAPACITY = 32;
+
+  private char[] _buffer;
+
+  private int[] _offsets = new int[INITIAL_CAPACITY];
+
+  private int[] _lengths = new int[INITIAL_CAPACITY];
+
+  private String[] _values = new String[INITIAL_CAPACITY];
+
+  private int _size = 0;
+
+  /**
+   * @return the number of fields in the row
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * @return the character buffer that field offsets refer to
+   */
+  public char[] getBuffer() {
+    return _buffer;
+  }
+
+  public int getOffset(int index) {
+    return _offsets[index];
+  }
+
+  public int getLength(int index) {
+    return _lengths[index];
+  }
+
+  public boolean isEmpty(int index) {
+    return _lengths[index] == 0;
+  }
+
+  /**
+   * @param index the field index
+   * @return the field value as a string, created on first access
+   */
+  public String getValue(int index) {
+    String value = _values[index];
+    if (value == null) {
+      value = new String(_buffer, _offsets[index], _lengths[index]);
+      _values[index] = value;
+    }
+    return value;
+  }
+
+  /**
+   * @param index the field index
+   * @param pool the pool to take the value from
+   * @return the field value as a string, shared with any equal values already
+   *         in the pool
+   */
+  public String getValue(int index, StringPool pool) {
+    String value = _values[index];
+    if (value == null)
+      value = pool.get(_buffer, _offsets[index], _lengths[index]);
+    else
+      value = pool.intern(value);
+    _values[index] = value;
+    return value;
+  }
+
+  /**
+   * @return all field values of the row as a newly created list
+   */
+  public List<String> getValues() {
+    List<String> values = new ArrayList<String>(_size);
+    for (int i = 0; i < _size; i++)
+      values.add(getValue(i));
+    return values;
+  }
+
+  /**
+   * Trims leading and trailing whitespace from each field, following the same
+   * rules as {@link String#trim()}, without creating any strings.
+   */
+  public void trim() {
+    for (int i = 0; i < _size; i++) {
+      int offset = _offsets[i];
+      int end = offset + _lengths[i];
+      while (offset < end && _buffer[offset] <= ' ')
+        offset++;
+      while (end > offset && _buffer[end - 1] <= ' ')
+        end--;
+      if (offset != _offsets[i] || end - offset != _lengths[i]) {
+        _offsets[i] = offset;
+        _lengths[i] = end - offset;
+        _values[i] = null;
+      }
+    }
+  }
+
+  /****
+   * Package Methods
+   ****/
+
+  void reset(char[] buffer) {
+    for (int i = 0; i < _size; i++)
+      _values[i] = null;
+    _buffer = buffer;
+    _size = 0;
+  }
+
+  void addField(int offset, int length) {
+    if (_size == _offsets.length)
+      grow();
+    _offsets[_size] = offset;
+    _lengths[_size] = length;
+    _size++;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void grow() {
+    int capacity = _offsets.length * 2;
+    int[] offsets = new int[capacity];
+    int[] lengths = new int[capacity];
+    String[] values = new String[capacity];
+    System.arraycopy(_offsets, 0, offsets, 0, _size);
+    System.arraycopy(_lengths, 0, lengths, 0, _size);
+    System.arraycopy(_values, 0, values, 0, _size);
+    _offsets = offsets;
+    _lengths = lengths;
+    _values = values;
+  }
+}
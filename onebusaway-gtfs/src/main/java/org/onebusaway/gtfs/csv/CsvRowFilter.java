@@ -0,0 +1,175 @@
+package org.onebusaway.gtfs.csv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.onebusaway.gtfs.csv.schema.AbstractFieldMapping;
+import org.onebusaway.gtfs.csv.schema.EntitySchema;
+import org.onebusaway.gtfs.csv.schema.FieldMapping;
+
+/**
+ * Evaluates {@link CsvValuePredicate}s against the raw values of a row before
+ * an entity is created for it. The ids of rejected rows are remembered per
+ * entity class, so that rows of later files that reference a rejected entity
+ * (see {@link AbstractFieldMapping#getReferencedEntityType()}) are rejected
+ * as well, e.g. the stop times of the trips of a rejected route.
+ */
+class CsvRowFilter {
+
+  private final Map<Class<?>, List<ColumnPredicate>> _predicatesByEntityClass = new ConcurrentHashMap<Class<?>, List<ColumnPredicate>>();
+
+  private final Map<Class<?>, Set<String>> _rejectedIdsByEntityClass = new ConcurrentHashMap<Class<?>, Set<String>>();
+
+  public void addPredicate(Class<?> entityClass, String csvFieldName,
+      CsvValuePredicate predicate) {
+    List<ColumnPredicate> predicates = _predicatesByEntityClass.get(entityClass);
+    if (predicates == null) {
+      predicates = new ArrayList<ColumnPredicate>();
+      _predicatesByEntityClass.put(entityClass, predicates);
+    }
+    predicates.add(new ColumnPredicate(CsvFieldKeys.getKey(csvFieldName),
+        predicate));
+  }
+
+  public boolean isEmpty() {
+    return _predicatesByEntityClass.isEmpty();
+  }
+
+  /**
+   * Forgets the ids rejected so far, so that the rows of a later load that
+   * reference an id rejected in an earlier one are read
+   */
+  void clearRejectedIds() {
+    synchronized (_rejectedIdsByEntityClass) {
+      // The sets are cleared rather than removed, as schema filters hold them
+      for (Set<String> ids : _rejectedIdsByEntityClass.values())
+        ids.clear();
+    }
+  }
+
+  public Set<String> getRejectedIds(Class<?> entityClass) {
+    Set<String> ids = _rejectedIdsByEntityClass.get(entityClass);
+    if (ids == null)
+      return Collections.emptySet();
+    return Collections.unmodifiableSet(ids);
+  }
+
+  /**
+   * Resolve the predicates, references and id column of a schema once, for
+   * evaluation against each of its rows.
+   */
+  public SchemaFilter getSchemaFilter(EntitySchema schema) {
+    return new SchemaFilter(schema);
+  }
+
+  private Set<String> getRejectedIdsForUpdate(Class<?> entityClass) {
+    synchronized (_rejectedIdsByEntityClass) {
+      Set<String> ids = _rejectedIdsByEntityClass.get(entityClass);
+      if (ids == null) {
+        ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        _rejectedIdsByEntityClass.put(entityClass, ids);
+      }
+      return ids;
+    }
+  }
+
+  private static class ColumnPredicate {
+
+    private final int _key;
+
+    private final CsvValuePredicate _predicate;
+
+    public ColumnPredicate(int key, CsvValuePredicate predicate) {
+      _key = key;
+      _predicate = predicate;
+    }
+  }
+
+  public class SchemaFilter {
+
+    private final List<ColumnPredicate> _predicates;
+
+    private final int[] _referenceKeys;
+
+    private final Class<?>[] _referenceTypes;
+
+    private final int _idKey;
+
+    private final Set<String> _rejectedIds;
+
+    private SchemaFilter(EntitySchema schema) {
+
+      Class<?> entityClass = schema.getEntityClass();
+
+      List<ColumnPredicate> predicates = _predicatesByEntityClass.get(entityClass);
+      if (predicates == null)
+        predicates = Collections.emptyList();
+      _predicates = predicates;
+
+      List<AbstractFieldMapping> references = new ArrayList<AbstractFieldMapping>();
+      int idKey = -1;
+
+      for (FieldMapping field : schema.getFields()) {
+        if (!(field instanceof AbstractFieldMapping))
+          continue;
+        AbstractFieldMapping mapping = (AbstractFieldMapping) field;
+        if (mapping.getReferencedEntityType() != null)
+          references.add(mapping);
+        if ("id".equals(mapping.getObjFieldName()))
+          idKey = CsvFieldKeys.getKey(mapping.getCsvFieldName());
+      }
+
+      _referenceKeys = new int[references.size()];
+      _referenceTypes = new Class<?>[references.size()];
+      for (int i = 0; i < references.size(); i++) {
+        AbstractFieldMapping mapping = references.get(i);
+        _referenceKeys[i] = CsvFieldKeys.getKey(mapping.getCsvFieldName());
+        _referenceTypes[i] = mapping.getReferencedEntityType();
+      }
+
+      _idKey = idKey;
+      _rejectedIds = idKey != -1 ? getRejectedIdsForUpdate(entityClass) : null;
+    }
+
+    /**
+     * @return true if the row should be read, false if it is rejected
+     */
+    public boolean accept(CsvRowValues values) {
+
+      if (isAccepted(values))
+        return true;
+
+      if (_rejectedIds != null) {
+        Object id = values.getValueForKey(_idKey);
+        if (id != null)
+          _rejectedIds.add(id.toString());
+      }
+      return false;
+    }
+
+    private boolean isAccepted(CsvRowValues values) {
+
+      for (int i = 0; i < _predicates.size(); i++) {
+        ColumnPredicate predicate = _predicates.get(i);
+        Object value = values.getValueForKey(predicate._key);
+        if (!predicate._predicate.test(value == null ? null : value.toString()))
+          return false;
+      }
+
+      for (int i = 0; i < _referenceKeys.length; i++) {
+        Set<String> rejected = _rejectedIdsByEntityClass.get(_referenceTypes[i]);
+        if (rejected == null || rejected.isEmpty())
+          continue;
+        Object value = values.getValueForKey(_referenceKeys[i]);
+        if (value != null && rejected.contains(value.toString()))
+          return false;
+      }
+
+      return true;
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package org.onebusaway.gtfs.csv;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.onebusaway.gtfs.csv.schema.AbstractFieldMapping;
+
+/**
+ * A read-only {@link Map} view of the values of the current csv row, keyed by
+ * csv field name. The header of a file is resolved to column indexes once, so
+ * that the values of each row can be read without a new map being populated
+ * per row. Field mappings that know their {@link CsvFieldKeys} key, such as
+ * those extending {@link AbstractFieldMapping}, can read a value with
+ * {@link #getValueForKey(int)} without any string hashing at all.
+ * 
+ * Values are only converted to strings when they are actually requested. As
+ * with the original map-per-row reader, columns that are missing from a short
+ * row are reported as empty strings.
+ */
+public class CsvRowValues extends AbstractMap<String, Object> {
+
+  private final Map<String, Integer> _indicesByName = new HashMap<String, Integer>();
+
+  private final int[] _indicesByKey;
+
+  private CsvRowBuffer _row;
+
+  private List<String> _values;
+
+  private StringPool _stringPool;
+
+  private final CharSlice _slice = new CharSlice();
+
+  public CsvRowValues(List<String> fields) {
+
+    int[] keys = new int[fields.size()];
+    int maxKey = -1;
+
+    for (int i = 0; i < fields.size(); i++) {
+      String name = fields.get(i);
+      _indicesByName.put(name, i);
+      // Only names that have a key can be read by key, so header names aren't
+      // registered, which would grow the keys with every unknown column read
+      keys[i] = CsvFieldKeys.findKey(name);
+      maxKey = Math.max(maxKey, keys[i]);
+    }
+
+    _indicesByKey = new int[maxKey + 1];
+    Arrays.fill(_indicesByKey, -1);
+
+    // Later duplicates of a field name win, as they did with a HashMap
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != -1)
+        _indicesByKey[keys[i]] = i;
+    }
+  }
+
+  public void setStringPool(StringPool stringPool) {
+    _stringPool = stringPool;
+  }
+
+  public void setRow(CsvRowBuffer row) {
+    _row = row;
+    _values = null;
+  }
+
+  public void setValues(List<String> values) {
+    _values = values;
+    _row = null;
+  }
+
+  /**
+   * @param key a key from {@link CsvFieldKeys#getKey(String)}
+   * @return the value of the field, or null if the file has no such field
+   */
+  public Object getValueForKey(int key) {
+    if (key < 0 || key >= _indicesByKey.length)
+      return null;
+    int index = _indicesByKey[key];
+    if (index == -1)
+      return null;
+    return getValue(index);
+  }
+
+  /**
+   * Same as {@link #getValueForKey(int)}, but for values that will be retained,
+   * which are deduplicated through the string pool if one is set.
+   */
+  public String getPooledValueForKey(int key) {
+    if (key < 0 || key >= _indicesByKey.length)
+      return null;
+    int index = _indicesByKey[key];
+    if (index == -1)
+      return null;
+    if (_stringPool == null)
+      return getValue(index).toString();
+    if (_row != null)
+      return index < _row.size() ? _row.getValue(index, _stringPool) : "";
+    return index < _values.size() ? _stringPool.intern(_values.get(index))
+        : "";
+  }
+
+  /**
+   * Same as {@link #getValueForKey(int)}, but without creating a string for
+   * the value, for mappings that parse values directly. The returned sequence
+   * is only valid until the next call.
+   */
+  public CharSequence getCharsForKey(int key) {
+    if (key < 0 || key >= _indicesByKey.length)
+      return null;
+    int index = _indicesByKey[key];
+    if (index == -1)
+      return null;
+    if (_row != null) {
+      if (index >= _row.size())
+        return "";
+      _slice.set(_row.getBuffer(), _row.getOffset(index),
+          _row.getLength(index));
+      return _slice;
+    }
+    return index < _values.size() ? _values.get(index) : "";
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return _indicesByName.containsKey(key);
+  }
+
+  @Override
+  public Object get(Object key) {
+    Integer index = _indicesByName.get(key);
+    if (index == null)
+      return null;
+    return getValue(index);
+  }
+
+  @Override
+  public int size() {
+    return _indicesByName.size();
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    return new EntrySet();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private Object getValue(int index) {
+    if (_row != null)
+      return index < _row.size() ? _row.getValue(index) : "";
+    return index < _values.size() ? _values.get(index) : "";
+  }
+
+  private class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+
+      final Iterator<Map.Entry<String, Integer>> it = _indicesByName.entrySet().iterator();
+
+      return new Iterator<Map.Entry<String, Object>>() {
+
+        @Override
+        public boolean hasNext() {
+          return it.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+          Map.Entry<String, Integer> entry = it.next();
+          return new SimpleImmutableEntry<String, Object>(entry.getKey(),
+              getValue(entry.getValue()));
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return _indicesByName.size();
+    }
+  }
+}
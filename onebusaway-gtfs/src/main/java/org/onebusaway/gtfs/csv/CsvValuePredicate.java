@@ -0,0 +1,17 @@
+package org.onebusaway.gtfs.csv;
+
+/**
+ * A test on the raw value of a single csv column, used to filter rows before
+ * any entity is created for them.
+ * 
+ * @see CsvValuePredicates
+ * @see CsvEntityReader#addRowPredicate(Class, String, CsvValuePredicate)
+ */
+public interface CsvValuePredicate {
+
+  /**
+   * @param value the column value, or null if the file has no such column
+   * @return true if the row should be kept
+   */
+  public boolean test(String value);
+}
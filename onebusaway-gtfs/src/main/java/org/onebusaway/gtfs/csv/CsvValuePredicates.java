@@ -0,0 +1,75 @@
+package org.onebusaway.gtfs.csv;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Common {@link CsvValuePredicate} implementations.
+ */
+public class CsvValuePredicates {
+
+  /**
+   * @return a predicate accepting values in the specified set
+   */
+  public static CsvValuePredicate in(Collection<String> values) {
+    return new InPredicate(values);
+  }
+
+  public static CsvValuePredicate in(String... values) {
+    return new InPredicate(Arrays.asList(values));
+  }
+
+  /**
+   * @return a predicate accepting values that fully match the regular
+   *         expression
+   */
+  public static CsvValuePredicate matches(String regex) {
+    return new MatchesPredicate(Pattern.compile(regex));
+  }
+
+  public static CsvValuePredicate not(CsvValuePredicate predicate) {
+    return new NotPredicate(predicate);
+  }
+
+  private static class InPredicate implements CsvValuePredicate {
+
+    private final Set<String> _values;
+
+    public InPredicate(Collection<String> values) {
+      _values = new HashSet<String>(values);
+    }
+
+    public boolean test(String value) {
+      return value != null && _values.contains(value);
+    }
+  }
+
+  private static class MatchesPredicate implements CsvValuePredicate {
+
+    private final Pattern _pattern;
+
+    public MatchesPredicate(Pattern pattern) {
+      _pattern = pattern;
+    }
+
+    public boolean test(String value) {
+      return value != null && _pattern.matcher(value).matches();
+    }
+  }
+
+  private static class NotPredicate implements CsvValuePredicate {
+
+    private final CsvValuePredicate _predicate;
+
+    public NotPredicate(CsvValuePredicate predicate) {
+      _predicate = predicate;
+    }
+
+    public boolean test(String value) {
+      return !_predicate.test(value);
+    }
+  }
+}
@@ -0,0 +1,317 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Groups the rows of a csv file by the value of one of its columns, for files
+ * too large to be held in memory. Rows are sorted in memory in runs of
+ * {@link #setMaxRowsInMemory(int)} rows, each run is written to a temporary
+ * file, and the runs are then merged into a single file. The sort is stable,
+ * so rows with the same key keep their relative order.
+ *
+ * Keys are compared after trimming, the same way values are trimmed when they
+ * are read as entities.
+ */
+public class ExternalCsvSorter {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private int _maxRowsInMemory = 250000;
+
+  private File _tempDirectory;
+
+  /**
+   * @param maxRowsInMemory the number of rows sorted in memory at a time, and
+   *          so the number of rows in each temporary run file
+   */
+  public void setMaxRowsInMemory(int maxRowsInMemory) {
+    if (maxRowsInMemory < 1)
+      throw new IllegalArgumentException("max rows in memory must be positive");
+    _maxRowsInMemory = maxRowsInMemory;
+  }
+
+  /**
+   * @param tempDirectory where temporary files are created, the system default
+   *          when null
+   */
+  public void setTempDirectory(File tempDirectory) {
+    _tempDirectory = tempDirectory;
+  }
+
+  /**
+   * Reads the input through to check whether each value of the key field only
+   * occurs in a single run of consecutive rows. Only the distinct key values
+   * are retained. The input is closed.
+   *
+   * @return true if the rows are grouped by the key field, or if the file has
+   *         no such field
+   */
+  public boolean isGrouped(InputStream in, String keyField) throws IOException {
+
+    RowTokenizer tokenizer = createRowTokenizer(in);
+
+    try {
+      CsvRowBuffer row = new CsvRowBuffer();
+      int keyIndex = readKeyIndex(tokenizer, row, keyField);
+      if (keyIndex == -1)
+        return true;
+
+      Set<String> completedKeys = new HashSet<String>();
+      String currentKey = null;
+
+      while (tokenizer.readRow(row)) {
+        if (row.size() == 0)
+          continue;
+        String key = getKey(row, keyIndex);
+        if (key.equals(currentKey))
+          continue;
+        if (currentKey != null)
+          completedKeys.add(currentKey);
+        if (completedKeys.contains(key))
+          return false;
+        currentKey = key;
+      }
+
+      return true;
+    } finally {
+      tokenizer.close();
+    }
+  }
+
+  /**
+   * Sorts the rows of the input by the key field into a new temporary file,
+   * which the caller is responsible for deleting. The header row is kept and
+   * empty rows are dropped. The input is closed.
+   *
+   * @return the sorted file
+   */
+  public File sort(InputStream in, String keyField) throws IOException {
+
+    List<File> runs = new ArrayList<File>();
+    RowTokenizer tokenizer = createRowTokenizer(in);
+
+    try {
+      CsvRowBuffer row = new CsvRowBuffer();
+      List<String> header = null;
+      if (tokenizer.readRow(row))
+        header = row.getValues();
+
+      int keyIndex = header != null ? getKeyIndex(header, keyField) : -1;
+      if (keyIndex == -1)
+        throw new IllegalArgumentException("no such key field: " + keyField);
+
+      List<SortedRow> rows = new ArrayList<SortedRow>();
+
+      while (tokenizer.readRow(row)) {
+        if (row.size() == 0)
+          continue;
+        rows.add(new SortedRow(getKey(row, keyIndex), row.getValues()));
+        if (rows.size() == _maxRowsInMemory) {
+          runs.add(writeRun(rows));
+          rows.clear();
+        }
+      }
+
+      if (!rows.isEmpty() || runs.isEmpty())
+        runs.add(writeRun(rows));
+
+      return mergeRuns(header, keyIndex, runs);
+    } finally {
+      tokenizer.close();
+      for (File run : runs)
+        run.delete();
+    }
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private RowTokenizer createRowTokenizer(InputStream in) {
+    return new CharBufferRowTokenizer(new InputStreamReader(in, UTF8));
+  }
+
+  private int readKeyIndex(RowTokenizer tokenizer, CsvRowBuffer row,
+      String keyField) throws IOException {
+    if (!tokenizer.readRow(row))
+      return -1;
+    return getKeyIndex(row.getValues(), keyField);
+  }
+
+  /**
+   * Header names are trimmed, as they are when the file is read as entities
+   */
+  private static int getKeyIndex(List<String> header, String keyField) {
+    for (int i = 0; i < header.size(); i++) {
+      if (header.get(i).trim().equals(keyField))
+        return i;
+    }
+    return -1;
+  }
+
+  private static String getKey(CsvRowBuffer row, int keyIndex) {
+    return keyIndex < row.size() ? row.getValue(keyIndex).trim() : "";
+  }
+
+  private File writeRun(List<SortedRow> rows) throws IOException {
+    // Collections.sort is stable, which keeps rows with equal keys in order
+    Collections.sort(rows);
+    File run = createTempFile();
+    Writer writer = openWriter(run);
+    try {
+      for (SortedRow row : rows)
+        writeRow(writer, row.values);
+    } finally {
+      writer.close();
+    }
+    return run;
+  }
+
+  private File mergeRuns(List<String> header, int keyIndex, List<File> runs)
+      throws IOException {
+
+    File output = createTempFile();
+    Writer writer = openWriter(output);
+    PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(
+        runs.size(), new RunReaderComparator());
+
+    boolean merged = false;
+
+    try {
+      writeRow(writer, header);
+
+      for (int i = 0; i < runs.size(); i++) {
+        RunReader reader = new RunReader(i, runs.get(i), keyIndex);
+        if (reader.next())
+          queue.add(reader);
+        else
+          reader.close();
+      }
+
+      while (!queue.isEmpty()) {
+        RunReader reader = queue.poll();
+        writeRow(writer, reader.values);
+        if (reader.next())
+          queue.add(reader);
+        else
+          reader.close();
+      }
+
+      merged = true;
+    } finally {
+      for (RunReader reader : queue)
+        reader.close();
+      writer.close();
+      if (!merged)
+        output.delete();
+    }
+
+    return output;
+  }
+
+  private File createTempFile() throws IOException {
+    File file = File.createTempFile("csv-sort-", ".txt", _tempDirectory);
+    file.deleteOnExit();
+    return file;
+  }
+
+  private static Writer openWriter(File file) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+        file), UTF8), 64 * 1024);
+  }
+
+  private static void writeRow(Writer writer, List<String> values)
+      throws IOException {
+    writer.write(CSVLibrary.getIterableAsCSV(values));
+    writer.write('\n');
+  }
+
+  private static class SortedRow implements Comparable<SortedRow> {
+
+    private final String key;
+
+    private final List<String> values;
+
+    public SortedRow(String key, List<String> values) {
+      this.key = key;
+      this.values = values;
+    }
+
+    @Override
+    public int compareTo(SortedRow o) {
+      return key.compareTo(o.key);
+    }
+  }
+
+  private static class RunReader {
+
+    private final int index;
+
+    private final int keyIndex;
+
+    private final RowTokenizer tokenizer;
+
+    private final CsvRowBuffer row = new CsvRowBuffer();
+
+    private String key;
+
+    private List<String> values;
+
+    public RunReader(int index, File run, int keyIndex) throws IOException {
+      this.index = index;
+      this.keyIndex = keyIndex;
+      this.tokenizer = new CharBufferRowTokenizer(new InputStreamReader(
+          new FileInputStream(run), UTF8));
+    }
+
+    public boolean next() throws IOException {
+      while (tokenizer.readRow(row)) {
+        if (row.size() == 0)
+          continue;
+        key = getKey(row, keyIndex);
+        values = row.getValues();
+        return true;
+      }
+      return false;
+    }
+
+    public void close() {
+      try {
+        tokenizer.close();
+      } catch (IOException ex) {
+
+      }
+    }
+  }
+
+  /**
+   * Orders runs by their current key, and then by run index, so that the merge
+   * is stable too
+   */
+  private static class RunReaderComparator implements Comparator<RunReader> {
+
+    @Override
+    public int compare(RunReader a, RunReader b) {
+      int c = a.key.compareTo(b.key);
+      if (c != 0)
+        return c;
+      return a.index < b.index ? -1 : (a.index == b.index ? 0 : 1);
+    }
+  }
+}
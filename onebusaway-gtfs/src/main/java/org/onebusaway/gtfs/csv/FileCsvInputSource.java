@@ -5,7 +5,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
-public class FileCsvInputSource implements CsvInputSource {
+public class FileCsvInputSource implements SizedCsvInputSource {
 
   private File _sourceDirectory;
 
@@ -23,6 +23,11 @@ public class FileCsvInputSource implements CsvInputSource {
     return new FileInputStream(file);
   }
 
+  public long getResourceSize(String name) throws IOException {
+    File file = new File(_sourceDirectory, name);
+    return file.exists() ? file.length() : -1;
+  }
+
   public void close() throws IOException {
 
   }
@@ -12,7 +12,6 @@ import org.onebusaway.gtfs.csv.schema.FieldMapping;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +35,14 @@ public class IndividualCsvEntityReader implements CSVListener {
 
   private boolean _trimValues = false;
 
+  private CsvRowValues _rowValues;
+
+  private StringPool _stringPool;
+
+  private CsvRowFilter.SchemaFilter _rowFilter;
+
+  private CsvFileReadStatistics _statistics;
+
   public IndividualCsvEntityReader(CsvEntityContext context,
       EntitySchema schema, EntityHandler handler) {
     _handler = handler;
@@ -64,6 +71,38 @@ public class IndividualCsvEntityReader implements CSVListener {
     _trimValues = trimValues;
   }
 
+  public void setStringPool(StringPool stringPool) {
+    _stringPool = stringPool;
+  }
+
+  /**
+   * @param rowFilter when not null, rows it rejects are skipped before any
+   *          entity is created for them
+   */
+  void setRowFilter(CsvRowFilter rowFilter) {
+    _rowFilter = rowFilter != null ? rowFilter.getSchemaFilter(_schema) : null;
+  }
+
+  /**
+   * @param statistics when not null, rows and the time spent binding,
+   *          validating and handling entities are added to the statistics
+   */
+  void setStatistics(CsvFileReadStatistics statistics) {
+    _statistics = statistics;
+  }
+
+  public boolean isInitialized() {
+    return _initialized;
+  }
+
+  /**
+   * @return the csv field names, in column order, or null if the header row has
+   *         not been read yet
+   */
+  public List<String> getFields() {
+    return _fields;
+  }
+
   public void handleLine(List<String> line) throws Exception {
 
     if (line.size() == 0)
@@ -78,6 +117,8 @@ public class IndividualCsvEntityReader implements CSVListener {
       readSchema(line);
       _initialized = true;
     } else {
+      if (_statistics != null)
+        _statistics.addRow();
       readEntity(line);
     }
     _line++;
@@ -85,38 +126,126 @@ public class IndividualCsvEntityReader implements CSVListener {
       System.out.println("entities=" + _line);
   }
 
+  /**
+   * Handle a row from a {@link RowTokenizer}. The field values are only valid
+   * for the duration of the call, as the row buffer is reused for the next row.
+   */
+  public void handleRow(CsvRowBuffer row) throws Exception {
+
+    if (row.size() == 0)
+      return;
+
+    if (_trimValues)
+      row.trim();
+
+    if (!_initialized) {
+      readSchema(row.getValues());
+      _initialized = true;
+    } else {
+      if (_statistics != null)
+        _statistics.addRow();
+      readEntity(row);
+    }
+    _line++;
+    if (_verbose && _line % 1000 == 0)
+      System.out.println("entities=" + _line);
+  }
+
   private void readSchema(List<String> line) {
     _fields = line;
   }
 
+  private void readEntity(CsvRowBuffer row) {
+    checkFieldCount(row.size());
+    getRowValues().setRow(row);
+    if (_rowFilter != null && !acceptRow())
+      return;
+    readEntity(_rowValues);
+  }
+
   private void readEntity(List<String> line) {
+    checkFieldCount(line.size());
+    getRowValues().setValues(line);
+    if (_rowFilter != null && !acceptRow())
+      return;
+    readEntity(_rowValues);
+  }
+
+  private boolean acceptRow() {
+    if (_statistics == null)
+      return _rowFilter.accept(_rowValues);
+    long start = System.nanoTime();
+    boolean accepted = _rowFilter.accept(_rowValues);
+    _statistics.addValidationNanos(System.nanoTime() - start);
+    return accepted;
+  }
 
-    if (line.size() != _fields.size()) {
+  private void checkFieldCount(int size) {
+    if (size != _fields.size()) {
       _log.warn("expected and actual number of csv fields differ: type="
           + _schema.getEntityClass().getName() + " line # " + _line
-          + " expected=" + _fields.size() + " actual=" + line.size());
-      while (line.size() < _fields.size())
-        line.add("");
+          + " expected=" + _fields.size() + " actual=" + size);
+    }
+  }
+
+  /**
+   * The header is resolved to column indexes once per file, and the same
+   * values view is then reused for every row
+   */
+  private CsvRowValues getRowValues() {
+    if (_rowValues == null) {
+      _rowValues = new CsvRowValues(_fields);
+      _rowValues.setStringPool(_stringPool);
+    }
+    return _rowValues;
+  }
+
+  private void readEntity(Map<String, Object> values) {
+
+    if (_statistics != null) {
+      readEntityWithStatistics(values);
+      return;
     }
 
     Object object = createNewEntityInstance();
     BeanWrapper wrapper = BeanWrapperFactory.wrap(object);
 
-    Map<String, Object> values = new HashMap<String, Object>();
+    for (FieldMapping mapping : _schema.getFields())
+      mapping.translateFromCSVToObject(_context, values, wrapper);
 
-    for (int i = 0; i < line.size(); i++) {
-      String csvFieldName = _fields.get(i);
-      String value = line.get(i);
-      values.put(csvFieldName, value);
-    }
+    for (EntityValidator validator : _schema.getValidators())
+      validator.validateEntity(_context, values, wrapper);
+
+    _handler.handleEntity(object);
+  }
+
+  /**
+   * Same as {@link #readEntity(Map)}, with each phase timed
+   */
+  private void readEntityWithStatistics(Map<String, Object> values) {
+
+    long start = System.nanoTime();
+
+    Object object = createNewEntityInstance();
+    BeanWrapper wrapper = BeanWrapperFactory.wrap(object);
 
     for (FieldMapping mapping : _schema.getFields())
       mapping.translateFromCSVToObject(_context, values, wrapper);
 
+    long bound = System.nanoTime();
+
     for (EntityValidator validator : _schema.getValidators())
       validator.validateEntity(_context, values, wrapper);
 
+    long validated = System.nanoTime();
+
     _handler.handleEntity(object);
+
+    long handled = System.nanoTime();
+
+    _statistics.addBindingNanos(bound - start);
+    _statistics.addValidationNanos(validated - bound);
+    _statistics.addStoreNanos(handled - validated);
   }
 
   private Object createNewEntityInstance() {
@@ -0,0 +1,104 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A directory based {@link CsvInputSource} that memory-maps each file with
+ * {@link FileChannel#map(FileChannel.MapMode, long, long)} instead of copying
+ * it through a stream. Files larger than the maximum size of a single mapping
+ * (2GB) are read as plain streams instead.
+ * 
+ * The mappings are released when their buffers are garbage collected, as Java
+ * has no portable way to unmap a file explicitly.
+ */
+public class MappedFileCsvInputSource implements ByteBufferCsvInputSource,
+    SizedCsvInputSource {
+
+  private File _sourceDirectory;
+
+  public MappedFileCsvInputSource(File sourceDirectory) {
+    _sourceDirectory = sourceDirectory;
+  }
+
+  public boolean hasResource(String name) throws IOException {
+    File file = new File(_sourceDirectory, name);
+    return file.exists();
+  }
+
+  public InputStream getResource(String name) throws IOException {
+    ByteBuffer buffer = getResourceAsByteBuffer(name);
+    if (buffer == null)
+      return new FileInputStream(new File(_sourceDirectory, name));
+    return new ByteBufferInputStream(buffer);
+  }
+
+  public ByteBuffer getResourceAsByteBuffer(String name) throws IOException {
+    File file = new File(_sourceDirectory, name);
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE)
+        return null;
+      // The mapping remains valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } finally {
+      raf.close();
+    }
+  }
+
+  public long getResourceSize(String name) throws IOException {
+    File file = new File(_sourceDirectory, name);
+    return file.exists() ? file.length() : -1;
+  }
+
+  public void close() throws IOException {
+
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer _buffer;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+      _buffer = buffer;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!_buffer.hasRemaining())
+        return -1;
+      return _buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0)
+        return 0;
+      int remaining = _buffer.remaining();
+      if (remaining == 0)
+        return -1;
+      len = Math.min(len, remaining);
+      _buffer.get(b, off, len);
+      return len;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return _buffer.remaining();
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      int skipped = (int) Math.max(0, Math.min(n, _buffer.remaining()));
+      _buffer.position(_buffer.position() + skipped);
+      return skipped;
+    }
+  }
+}
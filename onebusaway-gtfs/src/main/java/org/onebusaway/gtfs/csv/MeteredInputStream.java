@@ -0,0 +1,53 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from an input stream, and the time spent reading
+ * them, into the statistics of the file being read
+ */
+class MeteredInputStream extends FilterInputStream {
+
+  private final CsvFileReadStatistics _statistics;
+
+  public MeteredInputStream(InputStream in, CsvFileReadStatistics statistics) {
+    super(in);
+    _statistics = statistics;
+  }
+
+  @Override
+  public int read() throws IOException {
+    long start = System.nanoTime();
+    int b = super.read();
+    _statistics.addIoNanos(System.nanoTime() - start);
+    if (b != -1)
+      _statistics.addBytes(1);
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    long start = System.nanoTime();
+    int n = super.read(b, off, len);
+    _statistics.addIoNanos(System.nanoTime() - start);
+    if (n > 0)
+      _statistics.addBytes(n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long start = System.nanoTime();
+    long skipped = super.skip(n);
+    _statistics.addIoNanos(System.nanoTime() - start);
+    _statistics.addBytes(skipped);
+    return skipped;
+  }
+
+  @Override
+  public String toString() {
+    return in.toString();
+  }
+}
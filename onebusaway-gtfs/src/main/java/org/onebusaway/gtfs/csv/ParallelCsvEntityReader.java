@@ -0,0 +1,444 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.onebusaway.gtfs.csv.exceptions.CsvEntityIOException;
+import org.onebusaway.gtfs.csv.schema.EntitySchema;
+
+/**
+ * Reads a single csv file by splitting it into byte chunks at line boundaries
+ * and tokenizing and binding the chunks concurrently on an
+ * {@link ExecutorService}. The resulting entities are always passed to the
+ * {@link EntityHandler} on the calling thread, either in file order or, when
+ * order doesn't need to be preserved, one chunk at a time in whatever order the
+ * chunks complete.
+ *
+ * Since the csv dialect is line based (see {@link CSVLibrary}), every '\n' is a
+ * row boundary and a chunk can be split there without any knowledge of quoting.
+ * The byte 0x0A never occurs inside a multi-byte UTF-8 sequence, so each chunk
+ * can also be decoded independently.
+ */
+class ParallelCsvEntityReader {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final Class<?> _entityClass;
+
+  private final CsvEntityContext _context;
+
+  private final EntitySchema _schema;
+
+  private final EntityHandler _handler;
+
+  private final RowTokenizerStrategy _tokenizerStrategy;
+
+  private final ExecutorService _executor;
+
+  private int _chunkSize = 4 * 1024 * 1024;
+
+  private int _maxChunksInFlight = 2;
+
+  private boolean _preserveOrder = true;
+
+  private boolean _trimValues = false;
+
+  private StringPool _stringPool;
+
+  private CsvRowFilter _rowFilter;
+
+  private CsvFileReadStatistics _statistics;
+
+  private String _path;
+
+  /**
+   * Lines consumed by the chunks read on the calling thread, before the csv
+   * header had been read
+   */
+  private int _leadingLineCount = 0;
+
+  private int[] _lineCountsByChunk = new int[64];
+
+  private List<String> _fields;
+
+  private LinkedList<Future<ChunkResult>> _orderedChunks = new LinkedList<Future<ChunkResult>>();
+
+  private CompletionService<ChunkResult> _unorderedChunks;
+
+  private int _chunksInFlight = 0;
+
+  public ParallelCsvEntityReader(Class<?> entityClass,
+      CsvEntityContext context, EntitySchema schema, EntityHandler handler,
+      RowTokenizerStrategy tokenizerStrategy, ExecutorService executor) {
+    _entityClass = entityClass;
+    _context = context;
+    _schema = schema;
+    _handler = handler;
+    _tokenizerStrategy = tokenizerStrategy;
+    _executor = executor;
+    _unorderedChunks = new ExecutorCompletionService<ChunkResult>(executor);
+  }
+
+  public void setChunkSize(int chunkSize) {
+    _chunkSize = chunkSize;
+  }
+
+  public void setMaxChunksInFlight(int maxChunksInFlight) {
+    _maxChunksInFlight = maxChunksInFlight;
+  }
+
+  public void setPreserveOrder(boolean preserveOrder) {
+    _preserveOrder = preserveOrder;
+  }
+
+  public void setTrimValues(boolean trimValues) {
+    _trimValues = trimValues;
+  }
+
+  public void setStringPool(StringPool stringPool) {
+    _stringPool = stringPool;
+  }
+
+  public void setRowFilter(CsvRowFilter rowFilter) {
+    _rowFilter = rowFilter;
+  }
+
+  /**
+   * @param statistics when not null, the rows and phase times of every chunk
+   *          are added to the statistics
+   */
+  public void setStatistics(CsvFileReadStatistics statistics) {
+    _statistics = statistics;
+  }
+
+  public void readEntities(InputStream is, String path) throws IOException,
+      CsvEntityIOException {
+
+    _path = path;
+
+    ChunkSplitter splitter = new ChunkSplitter(is, _chunkSize);
+
+    /**
+     * Chunks are read on the calling thread until the header row, if any, has
+     * been seen, so that the field names are known to each worker
+     */
+    IndividualCsvEntityReader leadingReader = new IndividualCsvEntityReader(
+        _context, _schema, _handler);
+    leadingReader.setTrimValues(_trimValues);
+    leadingReader.setStringPool(_stringPool);
+    leadingReader.setRowFilter(_rowFilter);
+    leadingReader.setStatistics(_statistics);
+
+    Chunk chunk = null;
+
+    while (!leadingReader.isInitialized() && (chunk = splitter.next()) != null) {
+      RowTokenizer tokenizer = createRowTokenizer(chunk);
+      CsvRowBuffer row = new CsvRowBuffer();
+      try {
+        readRows(tokenizer, row, leadingReader, _statistics);
+      } catch (Exception ex) {
+        throw new CsvEntityIOException(_entityClass, _path, _leadingLineCount
+            + tokenizer.getLineNumber(), ex);
+      }
+      _leadingLineCount += tokenizer.getLineNumber();
+    }
+
+    _fields = leadingReader.getFields();
+
+    int index = 0;
+
+    while ((chunk = splitter.next()) != null) {
+      if (_chunksInFlight == _maxChunksInFlight)
+        handleResult(nextResult());
+      submit(new ChunkTask(index++, chunk));
+    }
+
+    while (_chunksInFlight > 0)
+      handleResult(nextResult());
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Reads all the rows of a chunk, adding the time spent tokenizing to the
+   * statistics if there are any
+   */
+  private static void readRows(RowTokenizer tokenizer, CsvRowBuffer row,
+      IndividualCsvEntityReader reader, CsvFileReadStatistics statistics)
+      throws Exception {
+
+    if (statistics == null) {
+      while (tokenizer.readRow(row))
+        reader.handleRow(row);
+      return;
+    }
+
+    long tokenizeNanos = 0;
+    try {
+      while (true) {
+        long start = System.nanoTime();
+        boolean read = tokenizer.readRow(row);
+        tokenizeNanos += System.nanoTime() - start;
+        if (!read)
+          break;
+        reader.handleRow(row);
+      }
+    } finally {
+      statistics.addTokenizeNanos(tokenizeNanos);
+    }
+  }
+
+  private RowTokenizer createRowTokenizer(Chunk chunk) {
+    InputStream in = new ByteArrayInputStream(chunk.data, 0, chunk.length);
+    return _tokenizerStrategy.createRowTokenizer(new InputStreamReader(in,
+        UTF8));
+  }
+
+  private void submit(ChunkTask task) {
+    if (_preserveOrder)
+      _orderedChunks.add(_executor.submit(task));
+    else
+      _unorderedChunks.submit(task);
+    _chunksInFlight++;
+  }
+
+  private ChunkResult nextResult() throws IOException {
+    try {
+      Future<ChunkResult> future = _preserveOrder
+          ? _orderedChunks.removeFirst() : _unorderedChunks.take();
+      _chunksInFlight--;
+      ChunkResult result = future.get();
+      setLineCount(result.index, result.lineCount);
+      return result;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while reading " + _path);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private void handleResult(ChunkResult result) throws IOException {
+
+    if (result.error != null)
+      fail(result.index, result.lineCount, result.error);
+
+    if (_statistics != null)
+      _statistics.add(result.statistics);
+
+    long start = System.nanoTime();
+
+    List<Object> entities = result.entities;
+    for (int i = 0; i < entities.size(); i++) {
+      try {
+        _handler.handleEntity(entities.get(i));
+      } catch (Exception ex) {
+        fail(result.index, result.entityLineNumbers[i], ex);
+      }
+    }
+
+    if (_statistics != null)
+      _statistics.addStoreNanos(System.nanoTime() - start);
+  }
+
+  /**
+   * Waits for the remaining chunks so that the absolute line number of the
+   * failure can be determined, and then throws.
+   */
+  private void fail(int index, int lineNumberInChunk, Exception cause)
+      throws IOException {
+
+    while (_chunksInFlight > 0)
+      nextResult();
+
+    int lineNumber = _leadingLineCount + lineNumberInChunk;
+    for (int i = 0; i < index; i++)
+      lineNumber += _lineCountsByChunk[i];
+
+    throw new CsvEntityIOException(_entityClass, _path, lineNumber, cause);
+  }
+
+  private void setLineCount(int index, int lineCount) {
+    if (index >= _lineCountsByChunk.length) {
+      int[] counts = new int[Math.max(index + 1, _lineCountsByChunk.length * 2)];
+      System.arraycopy(_lineCountsByChunk, 0, counts, 0,
+          _lineCountsByChunk.length);
+      _lineCountsByChunk = counts;
+    }
+    _lineCountsByChunk[index] = lineCount;
+  }
+
+  private static class Chunk {
+
+    private final byte[] data;
+
+    private final int length;
+
+    public Chunk(byte[] data, int length) {
+      this.data = data;
+      this.length = length;
+    }
+  }
+
+  private static class ChunkResult {
+
+    private final int index;
+
+    private List<Object> entities = new ArrayList<Object>();
+
+    private int[] entityLineNumbers = new int[256];
+
+    /**
+     * The number of lines in the chunk or, if there was an error, the line
+     * number within the chunk where the error occurred
+     */
+    private int lineCount;
+
+    private Exception error;
+
+    /**
+     * The rows and phase times of the chunk, when statistics are being kept
+     */
+    private CsvFileReadStatistics statistics;
+
+    public ChunkResult(int index) {
+      this.index = index;
+    }
+  }
+
+  private class ChunkTask implements Callable<ChunkResult> {
+
+    private final int _index;
+
+    private final Chunk _chunk;
+
+    public ChunkTask(int index, Chunk chunk) {
+      _index = index;
+      _chunk = chunk;
+    }
+
+    @Override
+    public ChunkResult call() {
+
+      final ChunkResult result = new ChunkResult(_index);
+      final RowTokenizer tokenizer = createRowTokenizer(_chunk);
+
+      EntityHandler collector = new EntityHandler() {
+        public void handleEntity(Object entity) {
+          int n = result.entities.size();
+          if (n == result.entityLineNumbers.length) {
+            int[] lineNumbers = new int[n * 2];
+            System.arraycopy(result.entityLineNumbers, 0, lineNumbers, 0, n);
+            result.entityLineNumbers = lineNumbers;
+          }
+          result.entityLineNumbers[n] = tokenizer.getLineNumber();
+          result.entities.add(entity);
+        }
+      };
+
+      IndividualCsvEntityReader reader = new IndividualCsvEntityReader(
+          collector, _context, _schema, _fields);
+      reader.setTrimValues(_trimValues);
+      reader.setStringPool(_stringPool);
+      reader.setRowFilter(_rowFilter);
+
+      if (_statistics != null) {
+        result.statistics = new CsvFileReadStatistics(_entityClass, _path);
+        reader.setStatistics(result.statistics);
+      }
+
+      CsvRowBuffer row = new CsvRowBuffer();
+
+      try {
+        readRows(tokenizer, row, reader, result.statistics);
+      } catch (Exception ex) {
+        result.error = ex;
+      }
+
+      result.lineCount = tokenizer.getLineNumber();
+      return result;
+    }
+  }
+
+  /**
+   * Reads an input stream as a sequence of byte chunks of roughly the target
+   * size, each ending just after a '\n' or at the end of input.
+   */
+  private static class ChunkSplitter {
+
+    private final InputStream _in;
+
+    private final int _chunkSize;
+
+    private byte[] _remainder = new byte[0];
+
+    private boolean _endOfInput = false;
+
+    public ChunkSplitter(InputStream in, int chunkSize) {
+      _in = in;
+      _chunkSize = chunkSize;
+    }
+
+    public Chunk next() throws IOException {
+
+      if (_endOfInput && _remainder.length == 0)
+        return null;
+
+      byte[] buffer = new byte[Math.max(_chunkSize, _remainder.length * 2)];
+      System.arraycopy(_remainder, 0, buffer, 0, _remainder.length);
+      int length = _remainder.length;
+      int scanned = length;
+      _remainder = new byte[0];
+
+      while (true) {
+
+        while (length < buffer.length && !_endOfInput) {
+          int n = _in.read(buffer, length, buffer.length - length);
+          if (n == -1)
+            _endOfInput = true;
+          else
+            length += n;
+        }
+
+        if (_endOfInput)
+          return length == 0 ? null : new Chunk(buffer, length);
+
+        int end = length - 1;
+        while (end >= scanned && buffer[end] != '\n')
+          end--;
+
+        if (end >= scanned) {
+          int remaining = length - (end + 1);
+          _remainder = new byte[remaining];
+          System.arraycopy(buffer, end + 1, _remainder, 0, remaining);
+          return new Chunk(buffer, end + 1);
+        }
+
+        // A single line longer than the chunk size
+        scanned = length;
+        byte[] larger = new byte[buffer.length * 2];
+        System.arraycopy(buffer, 0, larger, 0, length);
+        buffer = larger;
+      }
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link CsvInputSource} decorator that reads resources of the underlying
+ * source ahead of time on background threads, so that I/O for the next files
+ * overlaps with parsing of the current one. This matters most when the
+ * underlying source is slow, e.g. on network mounted storage. Resources to
+ * prefetch are registered in the order they will be read with
+ * {@link #prefetch(List)}. Each prefetched resource is read into a bounded
+ * buffer, so memory use is limited to roughly
+ * <code>(readAheadThreads + 1) * maxBufferedBytesPerResource</code>.
+ * 
+ * When a resource is requested, any resources before it in prefetch order that
+ * were never requested are discarded, so that a background reader is never
+ * left blocked on a full buffer that nobody will read. Resources that weren't
+ * prefetched, or are requested a second time, are read directly from the
+ * underlying source.
+ */
+public class PrefetchingCsvInputSource implements SizedCsvInputSource {
+
+  private final CsvInputSource _source;
+
+  private int _readAheadThreads = 1;
+
+  private int _blockSize = 64 * 1024;
+
+  private int _maxBlocksPerResource = 64;
+
+  private String _threadNamePrefix = "csv-prefetch-";
+
+  private ExecutorService _executor;
+
+  private final List<String> _prefetchOrder = new ArrayList<String>();
+
+  private final Map<String, BlockPipe> _pipesByName = new HashMap<String, BlockPipe>();
+
+  public PrefetchingCsvInputSource(CsvInputSource source) {
+    _source = source;
+  }
+
+  /**
+   * @param readAheadThreads the number of resources to read concurrently
+   */
+  public void setReadAheadThreads(int readAheadThreads) {
+    _readAheadThreads = readAheadThreads;
+  }
+
+  /**
+   * @param maxBufferedBytesPerResource the limit on data buffered ahead of the
+   *          reader for a single resource
+   */
+  public void setMaxBufferedBytesPerResource(int maxBufferedBytesPerResource) {
+    _maxBlocksPerResource = Math.max(1, maxBufferedBytesPerResource
+        / _blockSize);
+  }
+
+  public void setThreadNamePrefix(String threadNamePrefix) {
+    _threadNamePrefix = threadNamePrefix;
+  }
+
+  /**
+   * Start reading the named resources in the background, in the specified
+   * order. Names that the underlying source doesn't have are ignored.
+   */
+  public synchronized void prefetch(List<String> names) {
+
+    if (_executor == null)
+      _executor = Executors.newFixedThreadPool(_readAheadThreads,
+          new PrefetchThreadFactory(_threadNamePrefix));
+
+    for (String name : names) {
+      if (_pipesByName.containsKey(name) || !hasResourceQuietly(name))
+        continue;
+      BlockPipe pipe = new BlockPipe(_maxBlocksPerResource);
+      _pipesByName.put(name, pipe);
+      _prefetchOrder.add(name);
+      _executor.execute(new ReadAheadTask(name, pipe));
+    }
+  }
+
+  /**
+   * Discard anything prefetched and stop the background threads, without
+   * closing the underlying source. Resources can still be read directly.
+   */
+  public synchronized void cancelPrefetch() {
+    for (BlockPipe pipe : _pipesByName.values())
+      pipe.abandon();
+    _pipesByName.clear();
+    _prefetchOrder.clear();
+    if (_executor != null) {
+      _executor.shutdownNow();
+      _executor = null;
+    }
+  }
+
+  /****
+   * {@link CsvInputSource} Interface
+   ****/
+
+  @Override
+  public boolean hasResource(String name) throws IOException {
+    return _source.hasResource(name);
+  }
+
+  @Override
+  public InputStream getResource(String name) throws IOException {
+
+    BlockPipe pipe = null;
+
+    synchronized (this) {
+      int index = _prefetchOrder.indexOf(name);
+      if (index != -1) {
+        for (int i = 0; i < index; i++) {
+          BlockPipe skipped = _pipesByName.remove(_prefetchOrder.get(i));
+          skipped.abandon();
+        }
+        _prefetchOrder.subList(0, index + 1).clear();
+        pipe = _pipesByName.remove(name);
+      }
+    }
+
+    if (pipe == null)
+      return _source.getResource(name);
+    return pipe.getInputStream();
+  }
+
+  /**
+   * @return the size reported by the underlying source, if it's a
+   *         {@link SizedCsvInputSource}, or -1
+   */
+  @Override
+  public long getResourceSize(String name) throws IOException {
+    if (_source instanceof SizedCsvInputSource)
+      return ((SizedCsvInputSource) _source).getResourceSize(name);
+    return -1;
+  }
+
+  @Override
+  public void close() throws IOException {
+    cancelPrefetch();
+    _source.close();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Errors are left to surface when the resource is read directly
+   */
+  private boolean hasResourceQuietly(String name) {
+    try {
+      return _source.hasResource(name);
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+
+  private class ReadAheadTask implements Runnable {
+
+    private final String _name;
+
+    private final BlockPipe _pipe;
+
+    public ReadAheadTask(String name, BlockPipe pipe) {
+      _name = name;
+      _pipe = pipe;
+    }
+
+    @Override
+    public void run() {
+      InputStream in = null;
+      try {
+        in = _source.getResource(_name);
+        while (true) {
+          byte[] block = new byte[_blockSize];
+          int length = readBlock(in, block);
+          if (length > 0 && !_pipe.write(block, length))
+            return;
+          if (length < block.length)
+            break;
+        }
+        _pipe.finish();
+      } catch (IOException ex) {
+        _pipe.fail(ex);
+      } catch (InterruptedException ex) {
+        _pipe.fail(new IOException("interrupted while reading " + _name));
+      } catch (Throwable ex) {
+        // Any failure must reach the reader, which would otherwise wait on the
+        // pipe forever
+        _pipe.fail(new IOException("error reading " + _name, ex));
+      } finally {
+        if (in != null) {
+          try {
+            in.close();
+          } catch (IOException ex) {
+
+          }
+        }
+      }
+    }
+
+    private int readBlock(InputStream in, byte[] block) throws IOException {
+      int length = 0;
+      while (length < block.length) {
+        int n = in.read(block, length, block.length - length);
+        if (n == -1)
+          break;
+        length += n;
+      }
+      return length;
+    }
+  }
+
+  private static class PrefetchThreadFactory implements ThreadFactory {
+
+    private final String _prefix;
+
+    private int _index = 0;
+
+    public PrefetchThreadFactory(String prefix) {
+      _prefix = prefix;
+    }
+
+    @Override
+    public synchronized Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, _prefix + _index++);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
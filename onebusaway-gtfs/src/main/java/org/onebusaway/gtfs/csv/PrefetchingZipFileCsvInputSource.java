@@ -0,0 +1,62 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.ZipFile;
+
+/**
+ * A {@link ZipFileCsvInputSource} that inflates entries ahead of time on
+ * background threads, so that decompression of the next files overlaps with
+ * parsing of the current one. Entries to prefetch are registered in the order
+ * they will be read with {@link #prefetch(List)}. Each prefetched entry is
+ * inflated into a bounded buffer, so memory use is limited to roughly
+ * <code>(inflaterThreads + 1) * maxBufferedBytesPerEntry</code>.
+ * 
+ * This is a {@link PrefetchingCsvInputSource} over the zip file, and the same
+ * rules apply to entries that are skipped or requested more than once.
+ */
+public class PrefetchingZipFileCsvInputSource extends ZipFileCsvInputSource {
+
+  private final PrefetchingCsvInputSource _prefetcher;
+
+  public PrefetchingZipFileCsvInputSource(ZipFile zipFile) {
+    super(zipFile);
+    _prefetcher = new PrefetchingCsvInputSource(new ZipFileCsvInputSource(
+        zipFile));
+    _prefetcher.setThreadNamePrefix("zip-prefetch-");
+  }
+
+  /**
+   * @param inflaterThreads the number of entries to inflate concurrently
+   */
+  public void setInflaterThreads(int inflaterThreads) {
+    _prefetcher.setReadAheadThreads(inflaterThreads);
+  }
+
+  /**
+   * @param maxBufferedBytesPerEntry the limit on inflated data buffered ahead
+   *          of the reader for a single entry
+   */
+  public void setMaxBufferedBytesPerEntry(int maxBufferedBytesPerEntry) {
+    _prefetcher.setMaxBufferedBytesPerResource(maxBufferedBytesPerEntry);
+  }
+
+  /**
+   * Start inflating the named entries in the background, in the specified
+   * order. Names that aren't in the zip file are ignored.
+   */
+  public void prefetch(List<String> names) {
+    _prefetcher.prefetch(names);
+  }
+
+  @Override
+  public InputStream getResource(String name) throws IOException {
+    return _prefetcher.getResource(name);
+  }
+
+  @Override
+  public void close() throws IOException {
+    _prefetcher.close();
+  }
+}
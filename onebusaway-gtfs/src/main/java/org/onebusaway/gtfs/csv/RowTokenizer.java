@@ -0,0 +1,26 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.IOException;
+
+/**
+ * Splits a CSV input stream into rows, filling a reusable {@link CsvRowBuffer}
+ * for each row instead of allocating new token lists.
+ * 
+ * @see RowTokenizerStrategy
+ */
+public interface RowTokenizer {
+
+  /**
+   * @param row the row buffer to fill with the next row of input
+   * @return true if a row was read, or false if the end of input was reached
+   * @throws IOException
+   */
+  public boolean readRow(CsvRowBuffer row) throws IOException;
+
+  /**
+   * @return the one-based line number of the most recently read row
+   */
+  public int getLineNumber();
+
+  public void close() throws IOException;
+}
@@ -0,0 +1,14 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.Reader;
+
+/**
+ * A {@link TokenizerStrategy} that can also tokenize an entire input stream
+ * row-by-row into a reusable {@link CsvRowBuffer}. When a
+ * {@link CsvEntityReader} is configured with a strategy implementing this
+ * interface, it reads entities in streaming mode, where field values are only
+ * converted to strings when a field mapping asks for them.
+ */
+public interface RowTokenizerStrategy extends TokenizerStrategy {
+  public RowTokenizer createRowTokenizer(Reader reader);
+}
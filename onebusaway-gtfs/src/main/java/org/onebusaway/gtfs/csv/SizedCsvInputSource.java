@@ -0,0 +1,17 @@
+package org.onebusaway.gtfs.csv;
+
+import java.io.IOException;
+
+/**
+ * A {@link CsvInputSource} that knows the size of its resources before they
+ * are read, e.g. so that the number of rows of a file can be estimated up
+ * front.
+ */
+public interface SizedCsvInputSource extends CsvInputSource {
+
+  /**
+   * @param name the resource name
+   * @return the size of the resource in bytes, or -1 if it isn't known
+   */
+  public long getResourceSize(String name) throws IOException;
+}
@@ -0,0 +1,186 @@
+package org.onebusaway.gtfs.csv;
+
+/**
+ * A deduplicating pool of strings, scoped to a single load rather than the
+ * JVM-wide {@link String#intern()} table. Values like headsigns, block ids and
+ * service ids repeat across millions of rows, and pooling them means every
+ * entity that holds the same value shares a single instance.
+ * 
+ * Lookups can be made directly against a slice of a character buffer, so a
+ * value that is already in the pool never needs a temporary {@link String}.
+ * The pool is split into independently locked segments so that it can be
+ * shared by the worker threads of a parallel read.
+ */
+public class StringPool {
+
+  private static final int SEGMENT_BITS = 4;
+
+  private final Segment[] _segments = new Segment[1 << SEGMENT_BITS];
+
+  private int _maxLength = 256;
+
+  private int _maxSizePerSegment = Integer.MAX_VALUE;
+
+  public StringPool() {
+    for (int i = 0; i < _segments.length; i++)
+      _segments[i] = new Segment();
+  }
+
+  /**
+   * @param maxLength values longer than this are not pooled, as they are
+   *          unlikely to repeat. Defaults to 256.
+   */
+  public void setMaxLength(int maxLength) {
+    _maxLength = maxLength;
+  }
+
+  /**
+   * @param maxSize a limit on the number of distinct values in the pool. Once
+   *          reached, values not already in the pool are no longer added.
+   */
+  public void setMaxSize(int maxSize) {
+    _maxSizePerSegment = Math.max(1, maxSize / _segments.length);
+  }
+
+  /**
+   * @return the pooled string with the same characters as the specified slice
+   *         of the buffer, adding a new string to the pool if needed
+   */
+  public String get(char[] buffer, int offset, int length) {
+    if (length == 0)
+      return "";
+    if (length > _maxLength)
+      return new String(buffer, offset, length);
+    int hash = 0;
+    for (int i = offset; i < offset + length; i++)
+      hash = 31 * hash + buffer[i];
+    hash = spread(hash);
+    return getSegment(hash).get(buffer, offset, length, hash);
+  }
+
+  /**
+   * @return the pooled instance equal to the specified value, adding the value
+   *         to the pool if it isn't there yet
+   */
+  public String intern(String value) {
+    if (value == null || value.length() > _maxLength)
+      return value;
+    if (value.length() == 0)
+      return "";
+    int hash = spread(value.hashCode());
+    return getSegment(hash).intern(value, hash);
+  }
+
+  /**
+   * @return the number of distinct values in the pool
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : _segments)
+      size += segment.size();
+    return size;
+  }
+
+  public void clear() {
+    for (Segment segment : _segments)
+      segment.clear();
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private Segment getSegment(int hash) {
+    return _segments[hash >>> (32 - SEGMENT_BITS)];
+  }
+
+  /**
+   * An open addressing hash set of strings, with linear probing
+   */
+  private class Segment {
+
+    private String[] _table = new String[64];
+
+    private int _size = 0;
+
+    public synchronized String get(char[] buffer, int offset, int length,
+        int hash) {
+      String[] table = _table;
+      int mask = table.length - 1;
+      for (int i = hash & mask;; i = (i + 1) & mask) {
+        String value = table[i];
+        if (value == null)
+          break;
+        if (matches(value, buffer, offset, length))
+          return value;
+      }
+      String value = new String(buffer, offset, length);
+      add(value, hash);
+      return value;
+    }
+
+    public synchronized String intern(String value, int hash) {
+      String[] table = _table;
+      int mask = table.length - 1;
+      for (int i = hash & mask;; i = (i + 1) & mask) {
+        String existing = table[i];
+        if (existing == null)
+          break;
+        if (existing.equals(value))
+          return existing;
+      }
+      add(value, hash);
+      return value;
+    }
+
+    public synchronized int size() {
+      return _size;
+    }
+
+    public synchronized void clear() {
+      _table = new String[64];
+      _size = 0;
+    }
+
+    private void add(String value, int hash) {
+      if (_size >= _maxSizePerSegment)
+        return;
+      if (2 * (_size + 1) > _table.length)
+        resize();
+      insert(_table, value, hash);
+      _size++;
+    }
+
+    private void resize() {
+      String[] table = new String[_table.length * 2];
+      for (String value : _table) {
+        if (value != null)
+          insert(table, value, spread(value.hashCode()));
+      }
+      _table = table;
+    }
+
+    private void insert(String[] table, String value, int hash) {
+      int mask = table.length - 1;
+      int i = hash & mask;
+      while (table[i] != null)
+        i = (i + 1) & mask;
+      table[i] = value;
+    }
+
+    private boolean matches(String value, char[] buffer, int offset,
+        int length) {
+      if (value.length() != length)
+        return false;
+      for (int i = 0; i < length; i++) {
+        if (value.charAt(i) != buffer[offset + i])
+          return false;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package org.onebusaway.gtfs.csv;
+
+/**
+ * "SIMD within a register" helpers for scanning eight bytes of csv at a time,
+ * with each byte of a little-endian <code>long</code> treated as a lane.
+ */
+final class Swar {
+
+  static final long ONES = 0x0101010101010101L;
+
+  static final long HIGH_BITS = 0x8080808080808080L;
+
+  static final long NEWLINES = ONES * '\n';
+
+  static final long CARRIAGE_RETURNS = ONES * '\r';
+
+  static final long QUOTES = ONES * '"';
+
+  private Swar() {
+
+  }
+
+  /**
+   * Sets the high bit of each lane of the word that is equal to the pattern
+   * byte. Borrows can also set the high bit of lanes above a true match, so
+   * only the lowest set lane is exact, but the result is zero if and only if
+   * there is no match at all.
+   * 
+   * @param word eight bytes of input
+   * @param pattern a byte repeated in all lanes, e.g. {@link #NEWLINES}
+   */
+  static long match(long word, long pattern) {
+    long x = word ^ pattern;
+    return (x - ONES) & ~x & HIGH_BITS;
+  }
+
+  /**
+   * @param matches a non-zero result of {@link #match(long, long)}
+   * @return the index of the first matching lane
+   */
+  static int firstLane(long matches) {
+    return Long.numberOfTrailingZeros(matches) >>> 3;
+  }
+
+  /**
+   * @return a mask covering the lanes below the specified lane
+   */
+  static long lanesBelow(int lane) {
+    return lane == 0 ? 0 : -1L >>> (64 - lane * 8);
+  }
+}
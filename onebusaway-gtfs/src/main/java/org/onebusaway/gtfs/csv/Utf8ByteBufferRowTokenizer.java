@@ -0,0 +1,206 @@
+package org.onebusaway.gtfs.csv;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A {@link RowTokenizer} that reads UTF-8 encoded csv directly from a
+ * {@link ByteBuffer}, typically a memory-mapped file, without going through an
+ * {@link java.io.InputStreamReader}.
+ * 
+ * Each row is located by scanning for its line terminator in the byte buffer
+ * eight bytes at a time (see {@link Swar}). The same pass notes whether the row
+ * has any quotes or non-ASCII bytes. The bytes of the row are then widened into
+ * a reused <code>char[]</code>, which is all the decoding that's needed as long
+ * as the row is pure ASCII, as nearly all of GTFS is. Rows that do contain
+ * multi-byte sequences are decoded with a {@link CharsetDecoder}. The decoded
+ * row is then tokenized in place with the same dialect as
+ * {@link CharBufferRowTokenizer}, skipping the quote-aware state machine for
+ * rows without quotes.
+ */
+public class Utf8ByteBufferRowTokenizer implements RowTokenizer {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final ByteBuffer _buffer;
+
+  /**
+   * A little-endian view of the same content, for reading words
+   */
+  private final ByteBuffer _words;
+
+  private byte[] _bytes = new byte[1024];
+
+  private char[] _chars = new char[1024];
+
+  private CharsetDecoder _decoder;
+
+  private boolean _started = false;
+
+  private int _lineNumber = 0;
+
+  /**
+   * @param buffer the csv content, from the buffer's position to its limit. The
+   *          buffer's position is advanced as rows are read.
+   */
+  public Utf8ByteBufferRowTokenizer(ByteBuffer buffer) {
+    _buffer = buffer;
+    _words = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /****
+   * {@link RowTokenizer} Interface
+   ****/
+
+  @Override
+  public boolean readRow(CsvRowBuffer row) {
+
+    ByteBuffer buffer = _buffer;
+
+    if (!_started) {
+      _started = true;
+      skipByteOrderMark();
+    }
+
+    int from = buffer.position();
+    int limit = buffer.limit();
+
+    if (from >= limit)
+      return false;
+
+    ByteBuffer words = _words;
+    long highBits = 0;
+    long quotes = 0;
+    int end = from;
+    boolean terminated = false;
+
+    while (end + 8 <= limit) {
+      long word = words.getLong(end);
+      long terminators = Swar.match(word, Swar.NEWLINES)
+          | Swar.match(word, Swar.CARRIAGE_RETURNS);
+      if (terminators != 0) {
+        int lane = Swar.firstLane(terminators);
+        long mask = Swar.lanesBelow(lane);
+        highBits |= word & mask;
+        quotes |= Swar.match(word, Swar.QUOTES) & mask;
+        end += lane;
+        terminated = true;
+        break;
+      }
+      highBits |= word;
+      quotes |= Swar.match(word, Swar.QUOTES);
+      end += 8;
+    }
+
+    if (!terminated) {
+      for (; end < limit; end++) {
+        byte b = buffer.get(end);
+        if (b == '\n' || b == '\r')
+          break;
+        highBits |= b & 0x80;
+        if (b == '"')
+          quotes = 1;
+      }
+    }
+
+    int length = end - from;
+
+    // A high bit in any byte means the row isn't pure ASCII
+    if ((highBits & Swar.HIGH_BITS) != 0)
+      length = decode(from, end);
+    else
+      widen(from, length);
+
+    CharBufferRowTokenizer.tokenize(_chars, 0, length, row, quotes != 0);
+    _lineNumber++;
+
+    if (end < limit) {
+      if (buffer.get(end) == '\r' && end + 1 < limit
+          && buffer.get(end + 1) == '\n')
+        end++;
+      end++;
+    }
+    buffer.position(end);
+
+    return true;
+  }
+
+  @Override
+  public int getLineNumber() {
+    return _lineNumber;
+  }
+
+  @Override
+  public void close() {
+
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void skipByteOrderMark() {
+    ByteBuffer buffer = _buffer;
+    int p = buffer.position();
+    if (buffer.limit() - p >= 3 && buffer.get(p) == (byte) 0xEF
+        && buffer.get(p + 1) == (byte) 0xBB && buffer.get(p + 2) == (byte) 0xBF)
+      buffer.position(p + 3);
+  }
+
+  /**
+   * Copy the ASCII bytes starting at the specified index into the char buffer
+   */
+  private void widen(int from, int length) {
+
+    if (_bytes.length < length)
+      _bytes = new byte[Math.max(length, _bytes.length * 2)];
+    if (_chars.length < length)
+      grow(length);
+
+    ByteBuffer words = _words;
+    words.position(from);
+    words.get(_bytes, 0, length);
+
+    byte[] bytes = _bytes;
+    char[] chars = _chars;
+    for (int i = 0; i < length; i++)
+      chars[i] = (char) bytes[i];
+  }
+
+  /**
+   * Decode the bytes in [from,to) into the char buffer, replacing malformed
+   * input the same way {@link java.io.InputStreamReader} does.
+   * 
+   * @return the number of decoded chars
+   */
+  private int decode(int from, int to) {
+
+    if (_decoder == null) {
+      _decoder = UTF8.newDecoder();
+      _decoder.onMalformedInput(CodingErrorAction.REPLACE);
+      _decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    // UTF-8 never decodes to more chars than it has bytes
+    if (_chars.length < to - from)
+      grow(to - from);
+
+    ByteBuffer in = _buffer.duplicate();
+    in.limit(to);
+    in.position(from);
+    CharBuffer out = CharBuffer.wrap(_chars);
+
+    _decoder.reset();
+    _decoder.decode(in, out, true);
+    _decoder.flush(out);
+    return out.position();
+  }
+
+  private void grow(int minCapacity) {
+    _chars = new char[Math.max(minCapacity, _chars.length * 2)];
+  }
+}
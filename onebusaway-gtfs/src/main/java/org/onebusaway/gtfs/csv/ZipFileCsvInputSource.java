@@ -5,7 +5,7 @@ import java.io.InputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-public class ZipFileCsvInputSource implements CsvInputSource {
+public class ZipFileCsvInputSource implements SizedCsvInputSource {
 
   private ZipFile _zipFile;
 
@@ -23,6 +23,14 @@ public class ZipFileCsvInputSource implements CsvInputSource {
     return _zipFile.getInputStream(entry);
   }
 
+  /**
+   * @return the uncompressed size of the entry, if the zip file records it
+   */
+  public long getResourceSize(String name) throws IOException {
+    ZipEntry entry = _zipFile.getEntry(name);
+    return entry == null ? -1 : entry.getSize();
+  }
+
   public void close() throws IOException {
     _zipFile.close();
   }
@@ -275,7 +275,7 @@ public abstract class AbstractEntitySchemaFactoryImpl implements
     }
 
     if (mapping == null) {
-      DefaultFieldMapping m = new DefaultFieldMapping(entityClass,
+      DefaultFieldMapping m = createDefaultFieldMapping(entityClass,
           csvFieldName, objFieldName, objFieldType, required);
 
       try {
@@ -300,6 +300,26 @@ public abstract class AbstractEntitySchemaFactoryImpl implements
     return mapping;
   }
 
+  /**
+   * Primitive properties get mappings that parse and set values without
+   * boxing
+   */
+  private DefaultFieldMapping createDefaultFieldMapping(Class<?> entityClass,
+      String csvFieldName, String objFieldName, Class<?> objFieldType,
+      boolean required) {
+    if (objFieldType == Integer.TYPE)
+      return new IntFieldMapping(entityClass, csvFieldName, objFieldName,
+          required);
+    if (objFieldType == Double.TYPE)
+      return new DoubleFieldMapping(entityClass, csvFieldName, objFieldName,
+          required);
+    if (objFieldType == Boolean.TYPE)
+      return new BooleanFieldMapping(entityClass, csvFieldName, objFieldName,
+          required);
+    return new DefaultFieldMapping(entityClass, csvFieldName, objFieldName,
+        objFieldType, required);
+  }
+
   private String getEntityClassAsEntityName(Class<?> entityClass) {
     String name = entityClass.getName();
     int index = name.lastIndexOf(".");
@@ -4,6 +4,8 @@ import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.Map;
 
+import org.onebusaway.gtfs.csv.CsvFieldKeys;
+import org.onebusaway.gtfs.csv.CsvRowValues;
 import org.onebusaway.gtfs.csv.exceptions.MethodInvocationException;
 import org.onebusaway.gtfs.csv.exceptions.MissingRequiredFieldException;
 
@@ -17,16 +19,27 @@ public abstract class AbstractFieldMapping implements FieldMapping {
 
   protected final boolean _required;
 
+  /**
+   * The {@link CsvFieldKeys} key of the csv field name, for positional lookups
+   */
+  protected final int _csvFieldKey;
+
   protected int _order = 0;
 
   protected Method _isSetMethod = null;
 
+  /**
+   * Looked up on first use, for entities of exactly the mapping's entity type
+   */
+  private PropertyAccessor _objFieldAccessor;
+
   public AbstractFieldMapping(Class<?> entityType, String csvFieldName,
       String objFieldName, boolean required) {
     _entityType = entityType;
     _csvFieldName = csvFieldName;
     _objFieldName = objFieldName;
     _required = required;
+    _csvFieldKey = CsvFieldKeys.getKey(csvFieldName);
   }
 
   public void setOrder(int order) {
@@ -41,13 +54,112 @@ public abstract class AbstractFieldMapping implements FieldMapping {
     names.add(_csvFieldName);
   }
 
+  public String getCsvFieldName() {
+    return _csvFieldName;
+  }
+
+  public String getObjFieldName() {
+    return _objFieldName;
+  }
+
+  public boolean isRequired() {
+    return _required;
+  }
+
+  /**
+   * Adds the names of other object properties that must already be set on the
+   * entity when this mapping is applied. None by default.
+   */
+  public void getObjFieldDependencies(Collection<String> propertyNames) {
+
+  }
+
+  /**
+   * @return the entity type whose csv id this mapping's column refers to, or
+   *         null if the column is not a reference to another entity
+   */
+  public Class<?> getReferencedEntityType() {
+    return null;
+  }
+
   public int getOrder() {
     return _order;
   }
 
+  /**
+   * @return the csv value of the mapping's field, or null if the field isn't
+   *         present
+   */
+  protected Object getCsvValue(Map<String, Object> csvValues) {
+    if (csvValues instanceof CsvRowValues)
+      return ((CsvRowValues) csvValues).getValueForKey(_csvFieldKey);
+    return csvValues.get(_csvFieldName);
+  }
+
+  /**
+   * Same as {@link #getCsvValue(Map)}, for string values that the mapping will
+   * retain in the entity, which are deduplicated if the reader has a
+   * {@link org.onebusaway.gtfs.csv.StringPool}.
+   */
+  protected String getPooledCsvValue(Map<String, Object> csvValues) {
+    if (csvValues instanceof CsvRowValues)
+      return ((CsvRowValues) csvValues).getPooledValueForKey(_csvFieldKey);
+    Object value = csvValues.get(_csvFieldName);
+    return value == null ? null : value.toString();
+  }
+
+  /**
+   * Same as {@link BeanWrapper#getPropertyValue(String)} for the mapping's
+   * object field, but through an accessor that's resolved once per mapping
+   * rather than looked up by name for each entity.
+   */
+  protected Object getObjFieldValue(BeanWrapper object) {
+    Object bean = object.getWrappedInstance(Object.class);
+    return getObjFieldAccessor(bean).getValue(bean);
+  }
+
+  /**
+   * Same as {@link BeanWrapper#setPropertyValue(String, Object)} for the
+   * mapping's object field.
+   * 
+   * @see #getObjFieldValue(BeanWrapper)
+   */
+  protected void setObjFieldValue(BeanWrapper object, Object value) {
+    Object bean = object.getWrappedInstance(Object.class);
+    getObjFieldAccessor(bean).setValue(bean, value);
+  }
+
+  /**
+   * @return the accessor for the mapping's object field of the specified bean
+   */
+  protected PropertyAccessor getObjFieldAccessor(Object bean) {
+    Class<?> beanType = bean.getClass();
+    if (beanType != _entityType)
+      return BeanWrapperFactory.getPropertyAccessor(beanType, _objFieldName);
+    PropertyAccessor accessor = _objFieldAccessor;
+    if (accessor == null) {
+      accessor = BeanWrapperFactory.getPropertyAccessor(_entityType,
+          _objFieldName);
+      _objFieldAccessor = accessor;
+    }
+    return accessor;
+  }
+
+  /**
+   * Same as {@link #getCsvValue(Map)}, but without creating a string for the
+   * value when reading rows, for mappings that parse values directly. The
+   * returned sequence is only valid until the next call.
+   */
+  protected CharSequence getCsvChars(Map<String, Object> csvValues) {
+    if (csvValues instanceof CsvRowValues)
+      return ((CsvRowValues) csvValues).getCharsForKey(_csvFieldKey);
+    Object value = csvValues.get(_csvFieldName);
+    return value == null ? null : value.toString();
+  }
+
   protected boolean isMissing(Map<String, Object> csvValues) {
-    return !(csvValues.containsKey(_csvFieldName) && csvValues.get(
-        _csvFieldName).toString().length() > 0);
+    CharSequence value = getCsvChars(csvValues);
+    return value == null || value.length() == 0;
   }
 
   protected boolean isMissing(BeanWrapper object) {
@@ -63,7 +175,7 @@ public abstract class AbstractFieldMapping implements FieldMapping {
         throw new MethodInvocationException(_entityType, _isSetMethod, ex);
       }
     } else {
-      Object obj = object.getPropertyValue(_objFieldName);
+      Object obj = getObjFieldValue(object);
       return obj == null;
     }
     return false;
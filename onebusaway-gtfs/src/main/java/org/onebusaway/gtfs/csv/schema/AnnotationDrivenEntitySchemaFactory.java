@@ -2,15 +2,18 @@ package org.onebusaway.gtfs.csv.schema;
 
 import org.onebusaway.gtfs.csv.exceptions.NoCsvFieldsAnnotationException;
 import org.onebusaway.gtfs.csv.schema.annotations.CsvFields;
+import org.onebusaway.gtfs.csv.schema.annotations.CsvFieldsIndexProcessor;
 import org.onebusaway.gtfs.csv.schema.beans.CsvEntityMappingBean;
 import org.onebusaway.gtfs.csv.schema.beans.CsvFieldMappingBean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
@@ -20,10 +23,25 @@ import java.net.URL;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
+/**
+ * Registers the entity classes annotated with {@link CsvFields} that are added
+ * explicitly or found in the packages to scan.
+ * 
+ * The classes of a package are taken from the
+ * {@link CsvFieldsIndexProcessor#INDEX_RESOURCE} indexes on the classpath,
+ * which the {@link CsvFieldsIndexProcessor} writes at compile time, so that
+ * finding them doesn't depend on the size of the classpath. Only packages that
+ * have no loadable indexed classes are found by scanning the classpath, which
+ * loads every class of the package. Since a package with any indexed class
+ * isn't scanned, every jar that contributes entity classes to a scanned
+ * package, or its subpackages, must be compiled with the processor.
+ */
 public class AnnotationDrivenEntitySchemaFactory extends AbstractEntitySchemaFactoryImpl {
 
   /** URL prefix for loading from the file system: "file:" */
@@ -53,6 +71,8 @@ public class AnnotationDrivenEntitySchemaFactory extends AbstractEntitySchemaFac
 
   private List<Class<?>> _classesToScan = new ArrayList<Class<?>>();
 
+  private ClassLoader _classLoader = AnnotationDrivenEntitySchemaFactory.class.getClassLoader();
+
   public void addPackageToScan(String packageToScan) {
     _packagesToScan.add(packageToScan);
   }
@@ -61,6 +81,14 @@ public class AnnotationDrivenEntitySchemaFactory extends AbstractEntitySchemaFac
     _classesToScan.add(classToScan);
   }
 
+  /**
+   * @param classLoader the class loader that indexes and classes of the
+   *          packages to scan are loaded from
+   */
+  public void setClassLoader(ClassLoader classLoader) {
+    _classLoader = classLoader;
+  }
+
   @Override
   protected void processBeanDefinitions() {
 
@@ -82,17 +110,20 @@ public class AnnotationDrivenEntitySchemaFactory extends AbstractEntitySchemaFac
 
   private void go(String cName) {
     try {
-      Class<?> entityClass = Class.forName(cName);
-      CsvFields csvFields = entityClass.getAnnotation(CsvFields.class);
-      if (csvFields != null) {
-        CsvEntityMappingBean mappingBean = getEntityMappingBeanForEntityClass(entityClass);
-        registerBeanDefinition(mappingBean);
-      }
+      registerIfAnnotated(Class.forName(cName, true, _classLoader));
     } catch (ClassNotFoundException ex) {
 
     }
   }
 
+  private void registerIfAnnotated(Class<?> entityClass) {
+    CsvFields csvFields = entityClass.getAnnotation(CsvFields.class);
+    if (csvFields != null) {
+      CsvEntityMappingBean mappingBean = getEntityMappingBeanForEntityClass(entityClass);
+      registerBeanDefinition(mappingBean);
+    }
+  }
+
   private CsvEntityMappingBean getEntityMappingBeanForEntityClass(Class<?> entityClass) {
 
     CsvFields csvFields = entityClass.getAnnotation(CsvFields.class);
@@ -119,12 +150,23 @@ public class AnnotationDrivenEntitySchemaFactory extends AbstractEntitySchemaFac
 
   private void scanPackages() throws IOException {
 
-    ClassLoader cl = AnnotationDrivenEntitySchemaFactory.class.getClassLoader();
+    ClassLoader cl = _classLoader;
+
+    Set<String> indexedClassNames = null;
 
     for (String packageToScan : _packagesToScan) {
 
       if (packageToScan != null) {
 
+        if (indexedClassNames == null)
+          indexedClassNames = readIndexedClassNames();
+
+        if (registerIndexedClasses(packageToScan, indexedClassNames))
+          continue;
+
+        _log.info("no indexed entity classes for package " + packageToScan
+            + ", scanning the classpath");
+
         String pkg = packageToScan.replace('.', '/');
 
         for (Enumeration<URL> en = cl.getResources(pkg); en.hasMoreElements();) {
@@ -159,6 +201,53 @@ public class AnnotationDrivenEntitySchemaFactory extends AbstractEntitySchemaFac
     }
   }
 
+  private Set<String> readIndexedClassNames() throws IOException {
+
+    Set<String> classNames = new LinkedHashSet<String>();
+
+    for (Enumeration<URL> en = _classLoader.getResources(CsvFieldsIndexProcessor.INDEX_RESOURCE); en.hasMoreElements();) {
+      URL url = en.nextElement();
+      BufferedReader reader = new BufferedReader(new InputStreamReader(
+          url.openStream(), "UTF-8"));
+      try {
+        String line = null;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (line.length() > 0)
+            classNames.add(line);
+        }
+      } finally {
+        reader.close();
+      }
+    }
+
+    return classNames;
+  }
+
+  /**
+   * @return true if the index has any loadable classes in the package or its
+   *         subpackages, all of which have been registered
+   */
+  private boolean registerIndexedClasses(String packageToScan,
+      Set<String> indexedClassNames) {
+
+    String prefix = packageToScan + ".";
+    boolean found = false;
+
+    for (String className : indexedClassNames) {
+      if (!className.startsWith(prefix))
+        continue;
+      try {
+        registerIfAnnotated(Class.forName(className, true, _classLoader));
+        found = true;
+      } catch (ClassNotFoundException ex) {
+        _log.warn("skipping stale index entry for missing class " + className);
+      }
+    }
+
+    return found;
+  }
+
   private void scanFile(String root, File f) {
     if (f.isDirectory()) {
       File[] files = f.listFiles();
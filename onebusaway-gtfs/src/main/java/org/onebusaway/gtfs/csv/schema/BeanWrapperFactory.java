@@ -2,77 +2,68 @@ package org.onebusaway.gtfs.csv.schema;
 
 import java.beans.BeanInfo;
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.onebusaway.gtfs.csv.exceptions.IntrospectionException;
-import org.onebusaway.gtfs.csv.exceptions.MethodInvocationException;
 import org.onebusaway.gtfs.csv.exceptions.NoSuchPropertyException;
 
 public class BeanWrapperFactory {
 
-  private static Map<Class<?>, BeanClassWrapperImpl> _classWrappers = new HashMap<Class<?>, BeanClassWrapperImpl>();
+  private static Map<Class<?>, BeanClassWrapperImpl> _classWrappers = new ConcurrentHashMap<Class<?>, BeanClassWrapperImpl>();
 
   public static BeanWrapper wrap(Object object) {
-    Class<? extends Object> c = object.getClass();
+    BeanClassWrapperImpl classWrapper = getClassWrapper(object.getClass());
+    return new BeanWrapperImpl(classWrapper, object);
+  }
+
+  /**
+   * @return an accessor for the specified property, generated once per class
+   *         and property, that can be used to read or write the property of
+   *         any instance of the class without reflection
+   * @throws NoSuchPropertyException if the class has no such property
+   */
+  public static PropertyAccessor getPropertyAccessor(Class<?> type,
+      String propertyName) {
+    return getClassWrapper(type).getAccessor(type, propertyName);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static BeanClassWrapperImpl getClassWrapper(Class<?> c) {
     BeanClassWrapperImpl classWrapper = _classWrappers.get(c);
     if (classWrapper == null) {
       try {
         BeanInfo beanInfo = java.beans.Introspector.getBeanInfo(c);
-        classWrapper = new BeanClassWrapperImpl(beanInfo);
+        classWrapper = new BeanClassWrapperImpl(c, beanInfo);
         _classWrappers.put(c, classWrapper);
       } catch (Exception ex) {
         throw new IntrospectionException(c);
       }
     }
-
-    return new BeanWrapperImpl(classWrapper, object);
+    return classWrapper;
   }
 
   private static class BeanClassWrapperImpl {
 
-    private Map<String, Method> _readMethods = new HashMap<String, Method>();
+    private Map<String, PropertyAccessor> _accessors = new HashMap<String, PropertyAccessor>();
 
-    private Map<String, Method> _writeMethods = new HashMap<String, Method>();
-
-    public BeanClassWrapperImpl(BeanInfo info) {
+    public BeanClassWrapperImpl(Class<?> type, BeanInfo info) {
       PropertyDescriptor[] properties = info.getPropertyDescriptors();
       for (PropertyDescriptor property : properties) {
-        String name = property.getName();
-        _readMethods.put(name, property.getReadMethod());
-        _writeMethods.put(name, property.getWriteMethod());
-      }
-    }
-
-    public Class<?> getPropertyType(Object object, String propertyName) {
-      Method method = _readMethods.get(propertyName);
-      if (method == null)
-        throw new NoSuchPropertyException(object.getClass(), propertyName);
-      return method.getReturnType();
-    }
-
-    public Object getPropertyValue(Object object, String propertyName) {
-      Method method = _readMethods.get(propertyName);
-      if (method == null)
-        throw new NoSuchPropertyException(object.getClass(), propertyName);
-      try {
-        return method.invoke(object);
-      } catch (Exception ex) {
-        throw new MethodInvocationException(object.getClass(), method, ex);
+        _accessors.put(property.getName(),
+            PropertyAccessorFactory.createAccessor(type, property));
       }
     }
 
-    public void setPropertyValue(Object object, String propertyName,
-        Object value) {
-      Method method = _writeMethods.get(propertyName);
-      if (method == null)
-        throw new NoSuchPropertyException(object.getClass(), propertyName);
-      try {
-        method.invoke(object, value);
-      } catch (Exception ex) {
-        throw new MethodInvocationException(object.getClass(), method, ex);
-      }
+    public PropertyAccessor getAccessor(Class<?> type, String propertyName) {
+      PropertyAccessor accessor = _accessors.get(propertyName);
+      if (accessor == null)
+        throw new NoSuchPropertyException(type, propertyName);
+      return accessor;
     }
   }
 
@@ -94,16 +85,20 @@ public class BeanWrapperFactory {
     }
 
     public Class<?> getPropertyType(String propertyName) {
-      return _classWrapper.getPropertyType(_wrappedInstance, propertyName);
+      return getAccessor(propertyName).getPropertyType();
     }
 
     public Object getPropertyValue(String propertyName) {
-      return _classWrapper.getPropertyValue(_wrappedInstance, propertyName);
+      return getAccessor(propertyName).getValue(_wrappedInstance);
     }
 
     public void setPropertyValue(String propertyName, Object value) {
-      _classWrapper.setPropertyValue(_wrappedInstance, propertyName, value);
+      getAccessor(propertyName).setValue(_wrappedInstance, value);
     }
 
+    private PropertyAccessor getAccessor(String propertyName) {
+      return _classWrapper.getAccessor(_wrappedInstance.getClass(),
+          propertyName);
+    }
   }
 }
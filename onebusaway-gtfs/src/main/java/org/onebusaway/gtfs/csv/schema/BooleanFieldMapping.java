@@ -0,0 +1,32 @@
+package org.onebusaway.gtfs.csv.schema;
+
+import java.util.Map;
+
+import org.onebusaway.gtfs.csv.CsvEntityContext;
+
+/**
+ * A {@link DefaultFieldMapping} for <code>boolean</code> properties that parses
+ * values directly from the csv characters and sets them through a primitive
+ * setter, so that no string or boxed value is created per value. Values that
+ * can't be parsed are read as false, as with the default converter.
+ */
+public class BooleanFieldMapping extends DefaultFieldMapping {
+
+  public BooleanFieldMapping(Class<?> entityType, String csvFieldName,
+      String objFieldName, boolean required) {
+    super(entityType, csvFieldName, objFieldName, boolean.class, required);
+  }
+
+  @Override
+  public void translateFromCSVToObject(CsvEntityContext context,
+      Map<String, Object> csvValues, BeanWrapper object) {
+
+    if (isMissingAndOptional(csvValues))
+      return;
+
+    boolean value = PrimitiveParser.parseBoolean(getCsvChars(csvValues),
+        false);
+    Object bean = object.getWrappedInstance(Object.class);
+    getObjFieldAccessor(bean).setBoolean(bean, value);
+  }
+}
@@ -92,10 +92,15 @@ public class DateFieldMappingFactory implements FieldMappingFactory {
       if (isMissingAndOptional(csvValues))
         return;
 
-      String dateAsString = (String) csvValues.get(_csvFieldName);
+      String dateAsString = (String) getCsvValue(csvValues);
 
       try {
-        Date value = _dateFormat.parse(dateAsString);
+        Date value = null;
+        // DateFormat isn't thread-safe and the mapping may be shared by the
+        // workers of a parallel read
+        synchronized (_dateFormat) {
+          value = _dateFormat.parse(dateAsString);
+        }
 
         if (_isLongType)
           object.setPropertyValue(_objFieldName, value.getTime());
@@ -124,7 +129,10 @@ public class DateFieldMappingFactory implements FieldMappingFactory {
       else
         date = (Date) obj;
 
-      String dateAsString = _dateFormat.format(date);
+      String dateAsString = null;
+      synchronized (_dateFormat) {
+        dateAsString = _dateFormat.format(date);
+      }
       csvValues.put(_csvFieldName, dateAsString);
     }
   }
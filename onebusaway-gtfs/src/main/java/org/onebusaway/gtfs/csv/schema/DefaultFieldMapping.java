@@ -31,9 +31,10 @@ public class DefaultFieldMapping extends AbstractFieldMapping {
     if (isMissingAndOptional(csvValues))
       return;
 
-    Object csvValue = csvValues.get(_csvFieldName);
+    Object csvValue = _objFieldType == String.class
+        ? getPooledCsvValue(csvValues) : getCsvValue(csvValues);
     Object objValue = _converter.convert(_objFieldType, csvValue);
-    object.setPropertyValue(_objFieldName, objValue);
+    setObjFieldValue(object, objValue);
   }
 
   public void translateFromObjectToCSV(CsvEntityContext context,
@@ -42,7 +43,7 @@ public class DefaultFieldMapping extends AbstractFieldMapping {
     if (isMissingAndOptional(object))
       return;
 
-    Object objValue = object.getPropertyValue(_objFieldName);
+    Object objValue = getObjFieldValue(object);
     csvValues.put(_csvFieldName, objValue);
   }
 
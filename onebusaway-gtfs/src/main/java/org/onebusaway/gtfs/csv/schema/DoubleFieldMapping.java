@@ -0,0 +1,31 @@
+package org.onebusaway.gtfs.csv.schema;
+
+import java.util.Map;
+
+import org.onebusaway.gtfs.csv.CsvEntityContext;
+
+/**
+ * A {@link DefaultFieldMapping} for <code>double</code> properties that parses
+ * values directly from the csv characters and sets them through a primitive
+ * setter, so that no string or boxed value is created per value. Values that
+ * can't be parsed are read as 0.0, as with the default converter.
+ */
+public class DoubleFieldMapping extends DefaultFieldMapping {
+
+  public DoubleFieldMapping(Class<?> entityType, String csvFieldName,
+      String objFieldName, boolean required) {
+    super(entityType, csvFieldName, objFieldName, double.class, required);
+  }
+
+  @Override
+  public void translateFromCSVToObject(CsvEntityContext context,
+      Map<String, Object> csvValues, BeanWrapper object) {
+
+    if (isMissingAndOptional(csvValues))
+      return;
+
+    double value = PrimitiveParser.parseDouble(getCsvChars(csvValues), 0.0);
+    Object bean = object.getWrappedInstance(Object.class);
+    getObjFieldAccessor(bean).setDouble(bean, value);
+  }
+}
@@ -0,0 +1,150 @@
+package org.onebusaway.gtfs.csv.schema;
+
+/**
+ * Parses primitive values directly from csv characters, without creating a
+ * string or a boxed value for each. Values that aren't in the plain form
+ * handled here are passed on to the JDK parsers, and values that can't be
+ * parsed at all result in the specified default, just as with the default
+ * commons-beanutils converters used by {@link DefaultFieldMapping}.
+ */
+public final class PrimitiveParser {
+
+  /**
+   * Powers of ten that are exactly representable as doubles
+   */
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+      1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  /**
+   * Doubles represent every integer up to 2^53 exactly
+   */
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  private PrimitiveParser() {
+
+  }
+
+  public static int parseInt(CharSequence value, int defaultValue) {
+
+    int length = value.length();
+    int i = 0;
+    boolean negative = false;
+
+    if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+      negative = value.charAt(0) == '-';
+      i++;
+    }
+
+    // Nine digits can't overflow an int
+    if (i == length || length - i > 9)
+      return parseIntSlowly(value, defaultValue);
+
+    int result = 0;
+    for (; i < length; i++) {
+      int digit = value.charAt(i) - '0';
+      if (digit < 0 || digit > 9)
+        return parseIntSlowly(value, defaultValue);
+      result = result * 10 + digit;
+    }
+
+    return negative ? -result : result;
+  }
+
+  /**
+   * Plain decimals with up to 15 significant digits, as found in coordinates
+   * and distances, are parsed exactly: both the mantissa and the power of ten
+   * are exact doubles, so a single division is correctly rounded.
+   */
+  public static double parseDouble(CharSequence value, double defaultValue) {
+
+    int length = value.length();
+    int i = 0;
+    boolean negative = false;
+
+    if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+      negative = value.charAt(0) == '-';
+      i++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = 0;
+    boolean seenPoint = false;
+
+    for (; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == '.' && !seenPoint) {
+        seenPoint = true;
+        continue;
+      }
+      int digit = c - '0';
+      if (digit < 0 || digit > 9)
+        return parseDoubleSlowly(value, defaultValue);
+      mantissa = mantissa * 10 + digit;
+      digits++;
+      if (seenPoint)
+        fractionDigits++;
+      if (digits > 15)
+        return parseDoubleSlowly(value, defaultValue);
+    }
+
+    if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length
+        || mantissa > MAX_EXACT_MANTISSA)
+      return parseDoubleSlowly(value, defaultValue);
+
+    double result = mantissa / POWERS_OF_TEN[fractionDigits];
+    return negative ? -result : result;
+  }
+
+  /**
+   * Accepts the same values as the commons-beanutils BooleanConverter: "true",
+   * "yes", "y", "on" and "1" are true and "false", "no", "n", "off" and "0"
+   * are false, ignoring case.
+   */
+  public static boolean parseBoolean(CharSequence value, boolean defaultValue) {
+    if (value.length() == 1) {
+      switch (value.charAt(0)) {
+        case '1':
+        case 'y':
+        case 'Y':
+          return true;
+        case '0':
+        case 'n':
+        case 'N':
+          return false;
+        default:
+          return defaultValue;
+      }
+    }
+    String s = value.toString();
+    if (s.equalsIgnoreCase("true") || s.equalsIgnoreCase("yes")
+        || s.equalsIgnoreCase("on"))
+      return true;
+    if (s.equalsIgnoreCase("false") || s.equalsIgnoreCase("no")
+        || s.equalsIgnoreCase("off"))
+      return false;
+    return defaultValue;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static int parseIntSlowly(CharSequence value, int defaultValue) {
+    try {
+      return Integer.parseInt(value.toString());
+    } catch (NumberFormatException ex) {
+      return defaultValue;
+    }
+  }
+
+  private static double parseDoubleSlowly(CharSequence value,
+      double defaultValue) {
+    try {
+      return Double.parseDouble(value.toString());
+    } catch (NumberFormatException ex) {
+      return defaultValue;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package org.onebusaway.gtfs.csv.schema;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An {@link EntitySchemaFactory} decorator that restricts the field mappings of
+ * selected entity classes to a set of object properties. Columns without a
+ * mapping are never converted or set on the entity and, when rows are read
+ * with a row tokenizer, are never even turned into strings.
+ * 
+ * Besides the selected properties, a projected schema always keeps the "id"
+ * property, every required field and any property the kept fields depend on
+ * (see {@link AbstractFieldMapping#getObjFieldDependencies(Collection)}), so
+ * that entities can still be identified and referenced. Field mappings that
+ * don't extend {@link AbstractFieldMapping} and entity validators are always
+ * kept.
+ */
+public class ProjectingEntitySchemaFactory implements EntitySchemaFactory {
+
+  private final EntitySchemaFactory _entitySchemaFactory;
+
+  private final Map<Class<?>, Set<String>> _propertiesByEntityClass = new HashMap<Class<?>, Set<String>>();
+
+  private final Map<Class<?>, EntitySchema> _schemasByEntityClass = new HashMap<Class<?>, EntitySchema>();
+
+  public ProjectingEntitySchemaFactory(EntitySchemaFactory entitySchemaFactory) {
+    _entitySchemaFactory = entitySchemaFactory;
+  }
+
+  public EntitySchemaFactory getEntitySchemaFactory() {
+    return _entitySchemaFactory;
+  }
+
+  /**
+   * @param entityClass the entity class to project
+   * @param propertyNames the object properties to keep, or null to remove the
+   *          projection for the class
+   */
+  public synchronized void setProjection(Class<?> entityClass,
+      Collection<String> propertyNames) {
+    if (propertyNames == null)
+      _propertiesByEntityClass.remove(entityClass);
+    else
+      _propertiesByEntityClass.put(entityClass, new HashSet<String>(
+          propertyNames));
+    _schemasByEntityClass.remove(entityClass);
+  }
+
+  /****
+   * {@link EntitySchemaFactory} Interface
+   ****/
+
+  public synchronized EntitySchema getSchema(Class<?> entityClass) {
+
+    EntitySchema schema = _entitySchemaFactory.getSchema(entityClass);
+
+    Set<String> propertyNames = _propertiesByEntityClass.get(entityClass);
+    if (propertyNames == null)
+      return schema;
+
+    EntitySchema projected = _schemasByEntityClass.get(entityClass);
+    if (projected == null) {
+      projected = createProjectedSchema(schema, propertyNames);
+      _schemasByEntityClass.put(entityClass, projected);
+    }
+    return projected;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private EntitySchema createProjectedSchema(EntitySchema schema,
+      Set<String> propertyNames) {
+
+    Set<String> kept = new HashSet<String>(propertyNames);
+    kept.add("id");
+
+    for (FieldMapping field : schema.getFields()) {
+      if (field instanceof AbstractFieldMapping) {
+        AbstractFieldMapping mapping = (AbstractFieldMapping) field;
+        if (mapping.isRequired())
+          kept.add(mapping.getObjFieldName());
+      }
+    }
+
+    // Add the dependencies of kept fields until nothing changes
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (FieldMapping field : schema.getFields()) {
+        if (field instanceof AbstractFieldMapping) {
+          AbstractFieldMapping mapping = (AbstractFieldMapping) field;
+          if (kept.contains(mapping.getObjFieldName())) {
+            int size = kept.size();
+            mapping.getObjFieldDependencies(kept);
+            changed |= kept.size() != size;
+          }
+        }
+      }
+    }
+
+    EntitySchema projected = new EntitySchema(schema.getEntityClass(),
+        schema.getFilename(), schema.isRequired());
+    projected.setFieldsInOrder(schema.getFieldsInOrder());
+
+    for (FieldMapping field : schema.getFields()) {
+      if (!(field instanceof AbstractFieldMapping)
+          || kept.contains(((AbstractFieldMapping) field).getObjFieldName()))
+        projected.addField(field);
+    }
+
+    for (EntityValidator validator : schema.getValidators())
+      projected.addValidator(validator);
+
+    return projected;
+  }
+}
@@ -0,0 +1,53 @@
+package org.onebusaway.gtfs.csv.schema;
+
+import org.onebusaway.gtfs.csv.exceptions.MethodInvocationException;
+import org.onebusaway.gtfs.csv.exceptions.NoSuchPropertyException;
+
+/**
+ * Reads and writes a single bean property of a particular class, through
+ * accessor functions generated once per class and property instead of through
+ * reflection on each call.
+ * 
+ * @see BeanWrapperFactory#getPropertyAccessor(Class, String)
+ */
+public interface PropertyAccessor {
+
+  public String getPropertyName();
+
+  public Class<?> getPropertyType();
+
+  public boolean isReadable();
+
+  public boolean isWritable();
+
+  /**
+   * @throws NoSuchPropertyException if the property isn't readable
+   * @throws MethodInvocationException if the getter fails
+   */
+  public Object getValue(Object bean);
+
+  /**
+   * @throws NoSuchPropertyException if the property isn't writable
+   * @throws MethodInvocationException if the setter fails or the value is of
+   *           the wrong type
+   */
+  public void setValue(Object bean, Object value);
+
+  /**
+   * Same as {@link #setValue(Object, Object)}, but without boxing when the
+   * property is an int
+   */
+  public void setInt(Object bean, int value);
+
+  /**
+   * Same as {@link #setValue(Object, Object)}, but without boxing when the
+   * property is a double
+   */
+  public void setDouble(Object bean, double value);
+
+  /**
+   * Same as {@link #setValue(Object, Object)}, but without boxing when the
+   * property is a boolean
+   */
+  public void setBoolean(Object bean, boolean value);
+}
@@ -0,0 +1,263 @@
+package org.onebusaway.gtfs.csv.schema;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+
+import org.onebusaway.gtfs.csv.exceptions.MethodInvocationException;
+import org.onebusaway.gtfs.csv.exceptions.NoSuchPropertyException;
+
+/**
+ * Creates {@link PropertyAccessor}s whose getters and setters are spun with
+ * {@link LambdaMetafactory}, so that a property access compiles down to a plain
+ * method call. Boxing and unboxing of primitive properties is handled by the
+ * generated functions, and int, double and boolean properties also get setters
+ * that take the primitive value directly. Accessors fall back to reflection for methods that a
+ * generated function can't link against, e.g. those of non-public classes or
+ * of classes from a class loader we can't see.
+ */
+class PropertyAccessorFactory {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(
+      Object.class, Object.class);
+
+  private static final MethodType SETTER_TYPE = MethodType.methodType(
+      void.class, Object.class, Object.class);
+
+  private static final MethodType INT_SETTER_TYPE = MethodType.methodType(
+      void.class, Object.class, int.class);
+
+  private static final MethodType DOUBLE_SETTER_TYPE = MethodType.methodType(
+      void.class, Object.class, double.class);
+
+  private static final MethodType BOOLEAN_SETTER_TYPE = MethodType.methodType(
+      void.class, Object.class, boolean.class);
+
+  @SuppressWarnings("unchecked")
+  public static PropertyAccessor createAccessor(Class<?> beanClass,
+      PropertyDescriptor descriptor) {
+
+    Method readMethod = descriptor.getReadMethod();
+    Method writeMethod = descriptor.getWriteMethod();
+
+    PropertyAccessorImpl accessor = new PropertyAccessorImpl(beanClass,
+        descriptor.getName(), readMethod, writeMethod);
+
+    if (isLinkable(beanClass, readMethod))
+      accessor._getter = createGetter(beanClass, readMethod);
+
+    if (isLinkable(beanClass, writeMethod)) {
+      accessor._setter = createSetter(beanClass, writeMethod);
+      Class<?> type = writeMethod.getParameterTypes()[0];
+      if (type == int.class)
+        accessor._intSetter = (ObjIntConsumer<Object>) createPrimitiveSetter(
+            beanClass, writeMethod, ObjIntConsumer.class, INT_SETTER_TYPE);
+      else if (type == double.class)
+        accessor._doubleSetter = (ObjDoubleConsumer<Object>) createPrimitiveSetter(
+            beanClass, writeMethod, ObjDoubleConsumer.class, DOUBLE_SETTER_TYPE);
+      else if (type == boolean.class)
+        accessor._booleanSetter = (ObjBooleanConsumer) createPrimitiveSetter(
+            beanClass, writeMethod, ObjBooleanConsumer.class,
+            BOOLEAN_SETTER_TYPE);
+    }
+
+    return accessor;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static boolean isLinkable(Class<?> beanClass, Method method) {
+    if (method == null || !Modifier.isPublic(beanClass.getModifiers())
+        || !Modifier.isPublic(method.getDeclaringClass().getModifiers()))
+      return false;
+    try {
+      ClassLoader loader = PropertyAccessorFactory.class.getClassLoader();
+      return Class.forName(beanClass.getName(), false, loader) == beanClass;
+    } catch (ClassNotFoundException ex) {
+      return false;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> createGetter(Class<?> beanClass,
+      Method method) {
+    try {
+      MethodHandle handle = LOOKUP.unreflect(method);
+      MethodType instantiatedType = MethodType.methodType(
+          wrap(method.getReturnType()), beanClass);
+      CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+          MethodType.methodType(Function.class), GETTER_TYPE, handle,
+          instantiatedType);
+      return (Function<Object, Object>) site.getTarget().invoke();
+    } catch (Throwable ex) {
+      return null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Object, Object> createSetter(Class<?> beanClass,
+      Method method) {
+    try {
+      MethodHandle handle = LOOKUP.unreflect(method);
+      MethodType instantiatedType = MethodType.methodType(void.class,
+          beanClass, wrap(method.getParameterTypes()[0]));
+      CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+          MethodType.methodType(BiConsumer.class), SETTER_TYPE, handle,
+          instantiatedType);
+      return (BiConsumer<Object, Object>) site.getTarget().invoke();
+    } catch (Throwable ex) {
+      return null;
+    }
+  }
+
+  /**
+   * @param functionType a functional interface whose "accept" method takes the
+   *          bean and the primitive value
+   */
+  @SuppressWarnings("rawtypes")
+  private static Object createPrimitiveSetter(Class<?> beanClass,
+      Method method, Class functionType, MethodType samType) {
+    try {
+      MethodHandle handle = LOOKUP.unreflect(method);
+      MethodType instantiatedType = samType.changeParameterType(0, beanClass);
+      CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+          MethodType.methodType(functionType), samType, handle,
+          instantiatedType);
+      return site.getTarget().invoke();
+    } catch (Throwable ex) {
+      return null;
+    }
+  }
+
+  private static Class<?> wrap(Class<?> type) {
+    return MethodType.methodType(type).wrap().returnType();
+  }
+
+  /**
+   * The JDK has no functional interface for a boolean consumer
+   */
+  interface ObjBooleanConsumer {
+    public void accept(Object bean, boolean value);
+  }
+
+  private static class PropertyAccessorImpl implements PropertyAccessor {
+
+    private final Class<?> _beanClass;
+
+    private final String _propertyName;
+
+    private final Method _readMethod;
+
+    private final Method _writeMethod;
+
+    private Function<Object, Object> _getter;
+
+    private BiConsumer<Object, Object> _setter;
+
+    private ObjIntConsumer<Object> _intSetter;
+
+    private ObjDoubleConsumer<Object> _doubleSetter;
+
+    private ObjBooleanConsumer _booleanSetter;
+
+    public PropertyAccessorImpl(Class<?> beanClass, String propertyName,
+        Method readMethod, Method writeMethod) {
+      _beanClass = beanClass;
+      _propertyName = propertyName;
+      _readMethod = readMethod;
+      _writeMethod = writeMethod;
+    }
+
+    public String getPropertyName() {
+      return _propertyName;
+    }
+
+    public Class<?> getPropertyType() {
+      if (_readMethod == null)
+        throw new NoSuchPropertyException(_beanClass, _propertyName);
+      return _readMethod.getReturnType();
+    }
+
+    public boolean isReadable() {
+      return _readMethod != null;
+    }
+
+    public boolean isWritable() {
+      return _writeMethod != null;
+    }
+
+    public Object getValue(Object bean) {
+      if (_readMethod == null)
+        throw new NoSuchPropertyException(_beanClass, _propertyName);
+      try {
+        if (_getter != null)
+          return _getter.apply(bean);
+        return _readMethod.invoke(bean);
+      } catch (Exception ex) {
+        throw new MethodInvocationException(_beanClass, _readMethod, ex);
+      }
+    }
+
+    public void setValue(Object bean, Object value) {
+      if (_writeMethod == null)
+        throw new NoSuchPropertyException(_beanClass, _propertyName);
+      try {
+        if (_setter != null)
+          _setter.accept(bean, value);
+        else
+          _writeMethod.invoke(bean, value);
+      } catch (Exception ex) {
+        throw new MethodInvocationException(_beanClass, _writeMethod, ex);
+      }
+    }
+
+    public void setInt(Object bean, int value) {
+      if (_intSetter == null) {
+        setValue(bean, value);
+        return;
+      }
+      try {
+        _intSetter.accept(bean, value);
+      } catch (Exception ex) {
+        throw new MethodInvocationException(_beanClass, _writeMethod, ex);
+      }
+    }
+
+    public void setDouble(Object bean, double value) {
+      if (_doubleSetter == null) {
+        setValue(bean, value);
+        return;
+      }
+      try {
+        _doubleSetter.accept(bean, value);
+      } catch (Exception ex) {
+        throw new MethodInvocationException(_beanClass, _writeMethod, ex);
+      }
+    }
+
+    public void setBoolean(Object bean, boolean value) {
+      if (_booleanSetter == null) {
+        setValue(bean, value);
+        return;
+      }
+      try {
+        _booleanSetter.accept(bean, value);
+      } catch (Exception ex) {
+        throw new MethodInvocationException(_beanClass, _writeMethod, ex);
+      }
+    }
+  }
+}
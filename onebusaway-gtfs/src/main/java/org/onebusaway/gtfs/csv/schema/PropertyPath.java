@@ -0,0 +1,152 @@
+package org.onebusaway.gtfs.csv.schema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.onebusaway.gtfs.csv.exceptions.NoSuchPropertyException;
+
+/**
+ * A dotted bean property path, such as "route.agency.id", compiled once into a
+ * chain of {@link PropertyAccessor} instances so that evaluating it against a
+ * bean is a few accessor calls, with no string splitting or
+ * {@link BeanWrapper} per hop.
+ * 
+ * When the path is compiled for a root type, the accessor of each hop is
+ * resolved from the declared type of the previous property, so an invalid
+ * path fails at compile time. Values whose class differs from the declared
+ * type, or paths compiled without a root type, have their accessors looked up
+ * on first use and remembered for the next value of the same class.
+ * 
+ * Instances are immutable in effect and safe for use from multiple threads.
+ */
+public final class PropertyPath {
+
+  private final String _path;
+
+  private final List<String> _propertyNames;
+
+  private final Hop[] _hops;
+
+  private PropertyPath(String path, List<String> propertyNames, Hop[] hops) {
+    _path = path;
+    _propertyNames = propertyNames;
+    _hops = hops;
+  }
+
+  /**
+   * @param rootType the type of the beans the path will be evaluated against
+   * @param path a property path, e.g. "route.agency.id"
+   * @throws NoSuchPropertyException if a property of the path doesn't exist
+   */
+  public static PropertyPath compile(Class<?> rootType, String path) {
+
+    List<String> names = split(path);
+    Hop[] hops = new Hop[names.size()];
+    Class<?> type = rootType;
+
+    for (int i = 0; i < hops.length; i++) {
+      String name = names.get(i);
+      hops[i] = new Hop(name);
+      if (type != null) {
+        PropertyAccessor accessor = BeanWrapperFactory.getPropertyAccessor(
+            type, name);
+        hops[i]._resolved = new ResolvedHop(type, accessor);
+        type = accessor.getPropertyType();
+      }
+    }
+
+    return new PropertyPath(path, names, hops);
+  }
+
+  /**
+   * Same as {@link #compile(Class, String)}, for paths whose root type isn't
+   * known up front
+   */
+  public static PropertyPath compile(String path) {
+    return compile(null, path);
+  }
+
+  public String getPath() {
+    return _path;
+  }
+
+  /**
+   * @return the names of the properties of the path, in order
+   */
+  public List<String> getPropertyNames() {
+    return _propertyNames;
+  }
+
+  /**
+   * @return the value of the path for the specified bean, or null if the bean
+   *         or any intermediate value of the path is null
+   */
+  public Object getValue(Object bean) {
+    Object value = bean;
+    for (Hop hop : _hops) {
+      if (value == null)
+        return null;
+      value = hop.getAccessor(value.getClass()).getValue(value);
+    }
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return _path;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static List<String> split(String path) {
+    List<String> names = new ArrayList<String>();
+    int from = 0;
+    while (true) {
+      int to = path.indexOf('.', from);
+      String name = to == -1 ? path.substring(from) : path.substring(from, to);
+      if (name.length() == 0)
+        throw new IllegalArgumentException("invalid property path: " + path);
+      names.add(name);
+      if (to == -1)
+        break;
+      from = to + 1;
+    }
+    return Collections.unmodifiableList(names);
+  }
+
+  private static class Hop {
+
+    private final String _propertyName;
+
+    private volatile ResolvedHop _resolved;
+
+    public Hop(String propertyName) {
+      _propertyName = propertyName;
+    }
+
+    public PropertyAccessor getAccessor(Class<?> type) {
+      ResolvedHop hop = _resolved;
+      if (hop != null && hop.type == type)
+        return hop.accessor;
+      PropertyAccessor accessor = BeanWrapperFactory.getPropertyAccessor(type,
+          _propertyName);
+      _resolved = new ResolvedHop(type, accessor);
+      return accessor;
+    }
+  }
+
+  private static class ResolvedHop {
+
+    private final Class<?> type;
+
+    private final PropertyAccessor accessor;
+
+    public ResolvedHop(Class<?> type, PropertyAccessor accessor) {
+      this.type = type;
+      this.accessor = accessor;
+    }
+  }
+}
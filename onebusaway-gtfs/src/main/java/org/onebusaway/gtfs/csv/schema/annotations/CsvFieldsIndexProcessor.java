@@ -0,0 +1,123 @@
+package org.onebusaway.gtfs.csv.schema.annotations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.onebusaway.gtfs.csv.schema.AnnotationDrivenEntitySchemaFactory;
+
+/**
+ * An annotation processor that writes the names of all classes annotated with
+ * {@link CsvFields} to the {@link #INDEX_RESOURCE} resource of the compiled
+ * output, so that {@link AnnotationDrivenEntitySchemaFactory} can find the
+ * entity classes of a package without scanning the classpath.
+ * 
+ * The processor isn't registered as a service, since that would also apply it
+ * when compiling this module, so it has to be named explicitly, e.g. with
+ * <code>javac -processor</code> or the <code>annotationProcessors</code>
+ * setting of the maven compiler plugin.
+ */
+@SupportedAnnotationTypes("org.onebusaway.gtfs.csv.schema.annotations.CsvFields")
+public class CsvFieldsIndexProcessor extends AbstractProcessor {
+
+  public static final String INDEX_RESOURCE = "META-INF/onebusaway-csv-entities.index";
+
+  private final Set<String> _classNames = new TreeSet<String>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations,
+      RoundEnvironment roundEnv) {
+
+    for (Element element : roundEnv.getElementsAnnotatedWith(CsvFields.class)) {
+      if (element instanceof TypeElement) {
+        TypeElement type = (TypeElement) element;
+        _classNames.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+      }
+    }
+
+    if (roundEnv.processingOver() && !_classNames.isEmpty())
+      writeIndex();
+
+    return false;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void writeIndex() {
+
+    Filer filer = processingEnv.getFiler();
+
+    // Keep the entries of an incremental compile's earlier output, for the
+    // classes that still exist and are still annotated
+    try {
+      FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT,
+          "", INDEX_RESOURCE);
+      BufferedReader reader = new BufferedReader(new InputStreamReader(
+          existing.openInputStream(), "UTF-8"));
+      try {
+        String line = null;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (line.length() > 0 && isAnnotatedType(line))
+            _classNames.add(line);
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException ex) {
+      // No existing index
+    }
+
+    try {
+      FileObject index = filer.createResource(StandardLocation.CLASS_OUTPUT,
+          "", INDEX_RESOURCE);
+      Writer writer = new OutputStreamWriter(index.openOutputStream(), "UTF-8");
+      try {
+        for (String className : _classNames) {
+          writer.write(className);
+          writer.write('\n');
+        }
+      } finally {
+        writer.close();
+      }
+    } catch (IOException ex) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "error writing " + INDEX_RESOURCE + ": " + ex);
+    }
+  }
+
+  /**
+   * @param className the binary name of an indexed class
+   * @return true if the class can still be found and is annotated with
+   *         {@link CsvFields}
+   */
+  private boolean isAnnotatedType(String className) {
+    Elements elements = processingEnv.getElementUtils();
+    TypeElement type = elements.getTypeElement(className.replace('$', '.'));
+    return type != null && type.getAnnotation(CsvFields.class) != null
+        && elements.getBinaryName(type).contentEquals(className);
+  }
+}
@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.onebusaway.gtfs.model.IdentityBean;
 import org.onebusaway.gtfs.services.GenericMutableDao;
@@ -17,10 +18,12 @@ public class GenericDaoImpl implements GenericMutableDao {
 
   private final Logger _log = LoggerFactory.getLogger(GenericDaoImpl.class);
 
-  private Map<Class<?>, Map<Object, Object>> _entitiesByClassAndId = new HashMap<Class<?>, Map<Object, Object>>();
+  private Map<Class<?>, Map<Object, Object>> _entitiesByClassAndId = new ConcurrentHashMap<Class<?>, Map<Object, Object>>();
 
   private Map<Class<?>, EntityHandler<Serializable>> _handlers = new HashMap<Class<?>, EntityHandler<Serializable>>();
 
+  private Map<Class<?>, Integer> _entityCountHints = new ConcurrentHashMap<Class<?>, Integer>();
+
   private boolean _generateIds = true;
 
   public void setGenerateIds(boolean generateIds) {
@@ -63,31 +66,40 @@ public class GenericDaoImpl implements GenericMutableDao {
     return (T) byId.get(id);
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public void saveEntity(Object entity) {
-
     Class<?> c = entity.getClass();
+    saveEntity(entity, getEntityHandler(c), getEntitiesById(c, 0));
+  }
 
-    EntityHandler<Serializable> handler = _handlers.get(c);
-    if (handler == null) {
-      handler = (EntityHandler<Serializable>) createEntityHandler(c);
-      _handlers.put(c, handler);
-    }
+  /**
+   * Runs of consecutive entities of the same class share a single handler and
+   * map lookup, and the map for a class that has no entities yet is sized for
+   * the whole batch up front.
+   */
+  @Override
+  public void saveEntities(Collection<?> entities) {
 
-    IdentityBean<Serializable> bean = ((IdentityBean<Serializable>) entity);
-    handler.handle(bean);
+    Class<?> c = null;
+    EntityHandler<Serializable> handler = null;
+    Map<Object, Object> byId = null;
 
-    Map<Object, Object> byId = _entitiesByClassAndId.get(c);
-    if (byId == null) {
-      byId = new HashMap<Object, Object>();
-      _entitiesByClassAndId.put(c, byId);
+    for (Object entity : entities) {
+      if (entity.getClass() != c) {
+        c = entity.getClass();
+        handler = getEntityHandler(c);
+        byId = getEntitiesById(c, entities.size());
+      }
+      saveEntity(entity, handler, byId);
     }
-    Object id = bean.getId();
-    Object prev = byId.put(id, entity);
-    if (prev != null)
-      _log.warn("entity with id already exists: class=" + c + " id=" + id
-          + " prev=" + prev + " new=" + entity);
+  }
+
+  /**
+   * The hint sizes the map for the entity type when its first entity is saved
+   */
+  @Override
+  public void setEntityCountHint(Class<?> entityType, int expectedCount) {
+    _entityCountHints.put(entityType, expectedCount);
   }
 
   @Override
@@ -154,6 +166,47 @@ public class GenericDaoImpl implements GenericMutableDao {
    * Private Methods
    ****/
 
+  @SuppressWarnings("unchecked")
+  private void saveEntity(Object entity, EntityHandler<Serializable> handler,
+      Map<Object, Object> byId) {
+
+    IdentityBean<Serializable> bean = ((IdentityBean<Serializable>) entity);
+    handler.handle(bean);
+
+    Object id = bean.getId();
+    Object prev = byId.put(id, entity);
+    if (prev != null)
+      _log.warn("entity with id already exists: class=" + entity.getClass()
+          + " id=" + id + " prev=" + prev + " new=" + entity);
+  }
+
+  @SuppressWarnings("unchecked")
+  private EntityHandler<Serializable> getEntityHandler(Class<?> c) {
+    EntityHandler<Serializable> handler = _handlers.get(c);
+    if (handler == null) {
+      handler = (EntityHandler<Serializable>) createEntityHandler(c);
+      _handlers.put(c, handler);
+    }
+    return handler;
+  }
+
+  /**
+   * @param expectedSize the number of entities about to be saved, used along
+   *          with any count hint to size the map if the class has none yet
+   */
+  private Map<Object, Object> getEntitiesById(Class<?> c, int expectedSize) {
+    Map<Object, Object> byId = _entitiesByClassAndId.get(c);
+    if (byId == null) {
+      Integer hint = _entityCountHints.remove(c);
+      if (hint != null)
+        expectedSize = Math.max(expectedSize, hint);
+      byId = new HashMap<Object, Object>(Math.max(16,
+          (int) (expectedSize / 0.75f) + 1));
+      _entitiesByClassAndId.put(c, byId);
+    }
+    return byId;
+  }
+
   private EntityHandler<?> createEntityHandler(Class<?> entityType) {
 
     if (_generateIds) {
@@ -9,9 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.onebusaway.gtfs.csv.exceptions.EntityInstantiationException;
-import org.onebusaway.gtfs.csv.schema.BeanWrapper;
-import org.onebusaway.gtfs.csv.schema.BeanWrapperFactory;
+import org.onebusaway.gtfs.csv.schema.PropertyPath;
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.Frequency;
@@ -212,33 +210,35 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
     return Collections.unmodifiableList(list);
   }
 
+  /**
+   * When the keys are stored entities, e.g. the trips of stop times, the index
+   * is sized from their number, and each list from the average number of
+   * values per key, so that neither has to grow much as values are added.
+   */
   @SuppressWarnings("unchecked")
-  private static <K, V> Map<K, List<V>> mapToValueList(Iterable<V> values,
+  private <K, V> Map<K, List<V>> mapToValueList(Collection<V> values,
       String property, Class<K> keyType) {
-    return mapToValueCollection(values, property, keyType,
-        new ArrayList<V>().getClass());
-  }
 
-  @SuppressWarnings("unchecked")
-  private static <K, V, C extends Collection<V>, CIMPL extends C> Map<K, C> mapToValueCollection(
-      Iterable<V> values, String property, Class<K> keyType,
-      Class<CIMPL> collectionType) {
+    int keyCount = getAllEntitiesForType(keyType).size();
+
+    Map<K, List<V>> byKey = null;
+    int listCapacity = 10;
+
+    if (keyCount > 0) {
+      byKey = new HashMap<K, List<V>>((int) (keyCount / 0.75f) + 1);
+      listCapacity = Math.max(1, (values.size() + keyCount - 1) / keyCount);
+    } else {
+      byKey = new HashMap<K, List<V>>();
+    }
 
-    Map<K, C> byKey = new HashMap<K, C>();
     SimplePropertyQuery query = new SimplePropertyQuery(property);
 
     for (V value : values) {
 
       K key = (K) query.invoke(value);
-      C valuesForKey = byKey.get(key);
+      List<V> valuesForKey = byKey.get(key);
       if (valuesForKey == null) {
-
-        try {
-          valuesForKey = collectionType.newInstance();
-        } catch (Exception ex) {
-          throw new EntityInstantiationException(collectionType, ex);
-        }
-
+        valuesForKey = new ArrayList<V>(listCapacity);
         byKey.put(key, valuesForKey);
       }
       valuesForKey.add(value);
@@ -255,18 +255,14 @@ public class GtfsRelationalDaoImpl extends GtfsDaoImpl implements
 
   private static final class SimplePropertyQuery {
 
-    private String[] _properties;
+    private PropertyPath _path;
 
     public SimplePropertyQuery(String query) {
-      _properties = query.split("\\.");
+      _path = PropertyPath.compile(query);
     }
 
     public Object invoke(Object value) {
-      for (String property : _properties) {
-        BeanWrapper wrapper = BeanWrapperFactory.wrap(value);
-        value = wrapper.getPropertyValue(property);
-      }
-      return value;
+      return _path.getValue(value);
     }
   }
 
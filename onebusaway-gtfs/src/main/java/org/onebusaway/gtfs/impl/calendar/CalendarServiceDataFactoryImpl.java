@@ -217,7 +217,7 @@ public class CalendarServiceDataFactoryImpl implements
         addServiceDate(activeDates, c);
         break;
       case ServiceCalendarDate.EXCEPTION_TYPE_REMOVE:
-        activeDates.remove(new ServiceDate(c));
+        activeDates.remove(ServiceDate.valueOf(c));
         break;
       default:
         _log.warn("unknown CalendarDate exception type: "
@@ -233,6 +233,6 @@ public class CalendarServiceDataFactoryImpl implements
         return;
     }
 
-    activeDates.add(new ServiceDate(c));
+    activeDates.add(ServiceDate.valueOf(c));
   }
 }
@@ -80,7 +80,7 @@ public class AgencyAndId implements Serializable, Comparable<AgencyAndId> {
 
   @Override
   public int hashCode() {
-    return agencyId.hashCode() ^ id.hashCode();
+    return hash(agencyId, id);
   }
 
   @Override
@@ -103,4 +103,24 @@ public class AgencyAndId implements Serializable, Comparable<AgencyAndId> {
   public String toString() {
     return agencyId + "_" + id;
   }
+
+  /****
+   * Package Methods
+   ****/
+
+  /**
+   * Combines the hashes of both parts, so that equal agency and entity ids
+   * don't cancel out as they would with xor, and then mixes the bits with the
+   * MurmurHash3 finalizer, so that ids that differ only in their last digits
+   * still spread over the buckets of a hash table.
+   */
+  static int hash(String agencyId, String id) {
+    int h = 31 * agencyId.hashCode() + id.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
 }
@@ -0,0 +1,37 @@
+package org.onebusaway.gtfs.model;
+
+/**
+ * An {@link AgencyAndId} that can't be modified, and so can compute its hash
+ * code once. Instances are equal to, and hash the same as, mutable ids with
+ * the same values, so the two can be mixed freely as map keys.
+ * 
+ * @see org.onebusaway.gtfs.serialization.AgencyAndIdPool
+ */
+public final class ImmutableAgencyAndId extends AgencyAndId {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int _hash;
+
+  public ImmutableAgencyAndId(String agencyId, String id) {
+    super(agencyId, id);
+    if (agencyId == null || id == null)
+      throw new IllegalArgumentException("agency id and id must not be null");
+    _hash = hash(agencyId, id);
+  }
+
+  @Override
+  public void setAgencyId(String agencyId) {
+    throw new UnsupportedOperationException("id is immutable: " + this);
+  }
+
+  @Override
+  public void setId(String id) {
+    throw new UnsupportedOperationException("id is immutable: " + this);
+  }
+
+  @Override
+  public int hashCode() {
+    return _hash;
+  }
+}
@@ -6,8 +6,7 @@ import java.text.NumberFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.onebusaway.gtfs.model.ServiceCalendar;
 import org.onebusaway.gtfs.model.ServiceCalendarDate;
@@ -19,6 +18,11 @@ import org.onebusaway.gtfs.model.StopTime;
  * {@link ServiceCalendarDate} to represent service date ranges. A service date
  * is a particular date when a particular GTFS service id is active.
  * 
+ * Service dates are immutable. Feeds refer to the same few hundred days over
+ * and over, so {@link #valueOf(int, int, int)} and
+ * {@link #parseString(CharSequence)} return shared instances for days in the
+ * years {@value #MIN_CACHED_YEAR} to {@value #MAX_CACHED_YEAR}.
+ * 
  * @author bdferris
  * 
  */
@@ -26,11 +30,17 @@ public class ServiceDate implements Serializable, Comparable<ServiceDate> {
 
   private static final long serialVersionUID = 1L;
 
-  private static final Pattern _pattern = Pattern.compile("^(\\d{4})(\\d{2})(\\d{2})$");
+  public static final int MIN_CACHED_YEAR = 1970;
+
+  public static final int MAX_CACHED_YEAR = 2099;
 
-  private static final NumberFormat _yearFormat = new DecimalFormat("0000");
+  private static final int DAYS_PER_CACHED_YEAR = 12 * 31;
 
-  private static final NumberFormat _monthAndDayFormat = new DecimalFormat("00");
+  /**
+   * Shared instances, in blocks of one year that are created on first use
+   */
+  private static final AtomicReferenceArray<AtomicReferenceArray<ServiceDate>> _cache = new AtomicReferenceArray<AtomicReferenceArray<ServiceDate>>(
+      MAX_CACHED_YEAR - MIN_CACHED_YEAR + 1);
 
   private final int year;
 
@@ -74,23 +84,82 @@ public class ServiceDate implements Serializable, Comparable<ServiceDate> {
     this(new Date());
   }
 
+  /**
+   * Returns a shared instance for the specified date, if it's in the range of
+   * cached years, or a new instance otherwise.
+   * 
+   * @param year - numeric year (ex. 2010)
+   * @param month - numeric month of the year, where Jan = 1, Feb = 2, etc
+   * @param day - numeric day of month
+   */
+  public static ServiceDate valueOf(int year, int month, int day) {
+
+    if (year < MIN_CACHED_YEAR || year > MAX_CACHED_YEAR || month < 1
+        || month > 12 || day < 1 || day > 31)
+      return new ServiceDate(year, month, day);
+
+    int yearIndex = year - MIN_CACHED_YEAR;
+    AtomicReferenceArray<ServiceDate> days = _cache.get(yearIndex);
+    if (days == null) {
+      _cache.compareAndSet(yearIndex, null,
+          new AtomicReferenceArray<ServiceDate>(DAYS_PER_CACHED_YEAR));
+      days = _cache.get(yearIndex);
+    }
+
+    int dayIndex = (month - 1) * 31 + (day - 1);
+    ServiceDate date = days.get(dayIndex);
+    if (date == null) {
+      days.compareAndSet(dayIndex, null, new ServiceDate(year, month, day));
+      date = days.get(dayIndex);
+    }
+    return date;
+  }
+
+  /**
+   * @param value a date as an int of the form YYYYMMDD, see
+   *          {@link #getAsInt()}
+   * @see #valueOf(int, int, int)
+   */
+  public static ServiceDate valueOf(int value) {
+    return valueOf(value / 10000, (value / 100) % 100, value % 100);
+  }
+
+  /**
+   * @see #valueOf(int, int, int)
+   */
+  public static ServiceDate valueOf(Calendar calendar) {
+    return valueOf(calendar.get(Calendar.YEAR),
+        calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+  }
+
   /**
    * Parse a service date from a string in "YYYYMMDD" format.
    * 
    * @param value a string of the form "YYYYMMDD"
-   * @return a new ServiceDate object
+   * @return a ServiceDate object, shared as described in
+   *         {@link #valueOf(int, int, int)}
    */
   public static ServiceDate parseString(String value) {
+    return parseString((CharSequence) value);
+  }
 
-    Matcher matcher = _pattern.matcher(value);
+  /**
+   * Same as {@link #parseString(String)}, reading the characters directly
+   */
+  public static ServiceDate parseString(CharSequence value) {
 
-    if (!matcher.matches())
+    if (value.length() != 8)
       throw new IllegalStateException("error parsing date: " + value);
 
-    int year = Integer.parseInt(matcher.group(1));
-    int month = Integer.parseInt(matcher.group(2));
-    int day = Integer.parseInt(matcher.group(3));
-    return new ServiceDate(year, month, day);
+    int date = 0;
+    for (int i = 0; i < 8; i++) {
+      int digit = value.charAt(i) - '0';
+      if (digit < 0 || digit > 9)
+        throw new IllegalStateException("error parsing date: " + value);
+      date = date * 10 + digit;
+    }
+
+    return valueOf(date);
   }
 
   public int getYear() {
@@ -148,14 +217,34 @@ public class ServiceDate implements Serializable, Comparable<ServiceDate> {
     return c.getTime();
   }
 
+  /**
+   * @return the date as an int of the form YYYYMMDD, e.g. 20100212
+   */
+  public int getAsInt() {
+    return year * 10000 + month * 100 + day;
+  }
+
   /**
    * @return a string in "YYYYMMDD" format
    */
   public String getAsString() {
-    String year = _yearFormat.format(this.year);
-    String month = _monthAndDayFormat.format(this.month);
-    String day = _monthAndDayFormat.format(this.day);
-    return year + month + day;
+
+    if (year < 0 || year > 9999 || month < 0 || month > 99 || day < 0
+        || day > 99) {
+      String year = new DecimalFormat("0000").format(this.year);
+      NumberFormat monthAndDayFormat = new DecimalFormat("00");
+      String month = monthAndDayFormat.format(this.month);
+      String day = monthAndDayFormat.format(this.day);
+      return year + month + day;
+    }
+
+    char[] chars = new char[8];
+    int value = getAsInt();
+    for (int i = 7; i >= 0; i--) {
+      chars[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    return new String(chars);
   }
 
   @Override
@@ -205,6 +294,10 @@ public class ServiceDate implements Serializable, Comparable<ServiceDate> {
    * Private Methods
    ****/
 
+  private Object readResolve() {
+    return valueOf(year, month, day);
+  }
+
   private static final Calendar getCalendarForDate(Date date) {
     Calendar c = Calendar.getInstance();
     c.setTime(date);
@@ -0,0 +1,54 @@
+package org.onebusaway.gtfs.serialization;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.ImmutableAgencyAndId;
+
+/**
+ * Interns the ids created while reading a feed, so that each distinct id is a
+ * single {@link ImmutableAgencyAndId}, shared by the entity it identifies and
+ * by every lookup of that entity, e.g. all the stop times of a trip. Ids are
+ * kept per agency, so looking up an id that's already in the pool doesn't
+ * create any objects. Safe for use from multiple threads.
+ */
+public class AgencyAndIdPool {
+
+  private final ConcurrentMap<String, ConcurrentMap<String, AgencyAndId>> _idsByAgencyId = new ConcurrentHashMap<String, ConcurrentMap<String, AgencyAndId>>();
+
+  /**
+   * @return the shared id with the specified values
+   */
+  public AgencyAndId getId(String agencyId, String id) {
+
+    ConcurrentMap<String, AgencyAndId> ids = _idsByAgencyId.get(agencyId);
+    if (ids == null) {
+      ids = new ConcurrentHashMap<String, AgencyAndId>();
+      ConcurrentMap<String, AgencyAndId> existing = _idsByAgencyId.putIfAbsent(
+          agencyId, ids);
+      if (existing != null)
+        ids = existing;
+    }
+
+    AgencyAndId agencyAndId = ids.get(id);
+    if (agencyAndId == null) {
+      agencyAndId = new ImmutableAgencyAndId(agencyId, id);
+      AgencyAndId existing = ids.putIfAbsent(id, agencyAndId);
+      if (existing != null)
+        agencyAndId = existing;
+    }
+    return agencyAndId;
+  }
+
+  public int size() {
+    int size = 0;
+    for (ConcurrentMap<String, AgencyAndId> ids : _idsByAgencyId.values())
+      size += ids.size();
+    return size;
+  }
+
+  public void clear() {
+    _idsByAgencyId.clear();
+  }
+}
@@ -0,0 +1,18 @@
+package org.onebusaway.gtfs.serialization;
+
+import org.onebusaway.gtfs.csv.exceptions.CsvEntityException;
+import org.onebusaway.gtfs.model.Agency;
+
+/**
+ * Indicates that an agency id of a feed is already used by another feed being
+ * loaded by a {@link GtfsMultiFeedReader}.
+ */
+public class AgencyIdCollisionException extends CsvEntityException {
+
+  private static final long serialVersionUID = 1L;
+
+  public AgencyIdCollisionException(String feedName, String agencyId) {
+    super(Agency.class, "agency id already used by another feed: feed="
+        + feedName + " agencyId=" + agencyId);
+  }
+}
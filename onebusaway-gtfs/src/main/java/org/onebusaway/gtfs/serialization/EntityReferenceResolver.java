@@ -0,0 +1,61 @@
+package org.onebusaway.gtfs.serialization;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.onebusaway.gtfs.model.AgencyAndId;
+
+/**
+ * Resolves the raw csv ids of one entity type, as they appear in the fields
+ * of other files, e.g. the trip_id of stop_times.txt, to the entities that
+ * were read earlier in the same load. Each distinct id goes through the agency
+ * lookup, the {@link AgencyAndIdPool} and the entity store only once, after
+ * which it's a single map lookup. Safe for use from multiple threads.
+ * 
+ * Resolvers are created by the {@link GtfsReader} for each load and dropped
+ * whenever more entities of their type are read, so a resolver never returns
+ * an entity from a previous load.
+ * 
+ * @see GtfsReaderContext#getEntityReferenceResolver(Class)
+ */
+public class EntityReferenceResolver {
+
+  private final Class<?> _entityType;
+
+  private final GtfsReaderContext _context;
+
+  private final ConcurrentMap<String, Object> _entitiesByRawId = new ConcurrentHashMap<String, Object>();
+
+  public EntityReferenceResolver(Class<?> entityType, GtfsReaderContext context) {
+    _entityType = entityType;
+    _context = context;
+  }
+
+  public Class<?> getEntityType() {
+    return _entityType;
+  }
+
+  /**
+   * @param rawId the id as it appears in the csv, without an agency id
+   * @return the entity, or null if the entity store doesn't have it
+   * @throws EntityReferenceNotFoundException if no entity with the id was read
+   */
+  public Object resolve(String rawId) {
+
+    Object entity = _entitiesByRawId.get(rawId);
+
+    if (entity == null) {
+      String agencyId = _context.getAgencyForEntity(_entityType, rawId);
+      AgencyAndId id = _context.getAgencyAndId(agencyId, rawId);
+      entity = _context.getEntity(_entityType, id);
+      if (entity != null)
+        _entitiesByRawId.put(rawId, entity);
+    }
+
+    return entity;
+  }
+
+  public int size() {
+    return _entitiesByRawId.size();
+  }
+}
@@ -0,0 +1,520 @@
+package org.onebusaway.gtfs.serialization;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipFile;
+
+import org.onebusaway.gtfs.csv.CSVLibrary;
+import org.onebusaway.gtfs.csv.CsvEntityContext;
+import org.onebusaway.gtfs.csv.CsvEntityContextImpl;
+import org.onebusaway.gtfs.csv.CsvInputSource;
+import org.onebusaway.gtfs.csv.FileCsvInputSource;
+import org.onebusaway.gtfs.csv.ZipFileCsvInputSource;
+import org.onebusaway.gtfs.csv.schema.BeanWrapper;
+import org.onebusaway.gtfs.csv.schema.BeanWrapperFactory;
+import org.onebusaway.gtfs.csv.schema.EntitySchema;
+import org.onebusaway.gtfs.csv.schema.EntitySchemaFactory;
+import org.onebusaway.gtfs.csv.schema.FieldMapping;
+import org.onebusaway.gtfs.impl.GtfsDaoImpl;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.IdentityBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a {@link GtfsRelationalDaoImpl} up to date with a feed that is
+ * republished over time, applying only what changed since the previous load.
+ *
+ * Each file of the feed is fingerprinted with a SHA-1 hash of its content, and
+ * files whose hash matches the previous load are skipped entirely. A changed
+ * file is read into a staging store, with references to other entities
+ * resolved against the live store, and the difference with the live entities
+ * of its type is then applied:
+ *
+ * <ul>
+ * <li>Entities with an identity, such as routes and trips, are matched by id.
+ * Changed entities are updated in place, so that references to them from other
+ * entities stay valid.</li>
+ * <li>Entities with generated integer ids, such as stop times, have no
+ * identity in the feed, so they are matched by content. A changed row is
+ * removed and re-added.</li>
+ * </ul>
+ *
+ * Files are applied in the order of {@link GtfsReader#getEntityClasses()}, so
+ * that entities are updated before the files that refer to them are read. A
+ * change to agency.txt can change the agency id of every entity, so all files
+ * are then treated as changed. If a load fails, the files applied so far keep
+ * their new fingerprints, and the remaining files are applied by the next
+ * load.
+ */
+public class GtfsIncrementalReloader {
+
+  private static Logger _log = LoggerFactory.getLogger(GtfsIncrementalReloader.class);
+
+  private final GtfsRelationalDaoImpl _dao;
+
+  private String _defaultAgencyId;
+
+  private Map<String, String> _fingerprintsByFilename = new HashMap<String, String>();
+
+  private EntitySchemaFactory _schemaFactory = GtfsEntitySchemaFactory.createEntitySchemaFactory();
+
+  private CsvEntityContext _context = new CsvEntityContextImpl();
+
+  private Map<Class<?>, List<Field>> _fieldsByEntityClass = new HashMap<Class<?>, List<Field>>();
+
+  public GtfsIncrementalReloader(GtfsRelationalDaoImpl dao) {
+    _dao = dao;
+  }
+
+  public GtfsRelationalDaoImpl getDao() {
+    return _dao;
+  }
+
+  public void setDefaultAgencyId(String defaultAgencyId) {
+    _defaultAgencyId = defaultAgencyId;
+  }
+
+  /**
+   * @return the fingerprint of each file as of the last load
+   */
+  public Map<String, String> getFingerprintsByFilename() {
+    return Collections.unmodifiableMap(_fingerprintsByFilename);
+  }
+
+  public List<FileDelta> load(File path) throws IOException {
+    CsvInputSource source = path.isDirectory() ? new FileCsvInputSource(path)
+        : new ZipFileCsvInputSource(new ZipFile(path));
+    try {
+      return load(source);
+    } finally {
+      source.close();
+    }
+  }
+
+  /**
+   * @return the changes applied for each file that had changed
+   */
+  public List<FileDelta> load(CsvInputSource source) throws IOException {
+
+    ReloadReader reader = new ReloadReader();
+    if (_defaultAgencyId != null)
+      reader.setDefaultAgencyId(_defaultAgencyId);
+
+    EntitySchemaFactory schemaFactory = reader.getEntitySchemaFactory();
+    List<Class<?>> entityClasses = reader.getEntityClasses();
+
+    Map<Class<?>, String> fingerprints = new HashMap<Class<?>, String>();
+    boolean allChanged = false;
+
+    for (Class<?> entityClass : entityClasses) {
+      String filename = schemaFactory.getSchema(entityClass).getFilename();
+      String fingerprint = getFingerprint(source, filename);
+      fingerprints.put(entityClass, fingerprint);
+      if (entityClass == Agency.class
+          && !equal(fingerprint, _fingerprintsByFilename.get(filename)))
+        allChanged = true;
+    }
+
+    if (!entityClasses.contains(Agency.class) || !allChanged)
+      reader.setAgencies(new ArrayList<Agency>(_dao.getAllAgencies()));
+
+    List<FileDelta> deltas = new ArrayList<FileDelta>();
+
+    for (Class<?> entityClass : entityClasses) {
+
+      String filename = schemaFactory.getSchema(entityClass).getFilename();
+      String fingerprint = fingerprints.get(entityClass);
+
+      if (!allChanged
+          && equal(fingerprint, _fingerprintsByFilename.get(filename))) {
+        _log.info("unchanged: " + filename);
+        continue;
+      }
+
+      if (fingerprint == null
+          && _dao.getAllEntitiesForType(entityClass).isEmpty())
+        continue;
+
+      _log.info("reloading: " + filename);
+
+      GtfsDaoImpl staging = new GtfsDaoImpl();
+      reader.setEntityStore(staging);
+      reader.readEntities(entityClass, source);
+      reader.addReadClass(entityClass);
+
+      FileDelta delta = applyDelta(entityClass, filename,
+          staging.getAllEntitiesForType(entityClass));
+      deltas.add(delta);
+
+      // Later files must refer to the live agencies, not the staged ones
+      if (entityClass == Agency.class)
+        reader.setAgencies(new ArrayList<Agency>(_dao.getAllAgencies()));
+
+      if (fingerprint != null)
+        _fingerprintsByFilename.put(filename, fingerprint);
+      else
+        _fingerprintsByFilename.remove(filename);
+
+      _dao.clearAllCaches();
+    }
+
+    return deltas;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * @return the hex SHA-1 hash of the resource, or null if there is no such
+   *         resource
+   */
+  private static String getFingerprint(CsvInputSource source, String filename)
+      throws IOException {
+
+    if (!source.hasResource(filename))
+      return null;
+
+    MessageDigest digest = createDigest();
+    InputStream in = source.getResource(filename);
+
+    try {
+      byte[] buffer = new byte[64 * 1024];
+      int n;
+      while ((n = in.read(buffer)) != -1)
+        digest.update(buffer, 0, n);
+    } finally {
+      in.close();
+    }
+
+    StringBuilder b = new StringBuilder();
+    for (byte v : digest.digest())
+      b.append(Character.forDigit((v >> 4) & 0xF, 16)).append(
+          Character.forDigit(v & 0xF, 16));
+    return b.toString();
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private FileDelta applyDelta(Class<?> entityClass, String filename,
+      Collection<?> stagedEntities) {
+
+    FileDelta delta = new FileDelta(entityClass, filename);
+
+    List<Object> entities = new ArrayList<Object>(stagedEntities);
+    List<Object> liveEntities = new ArrayList<Object>(
+        _dao.getAllEntitiesForType(entityClass));
+
+    boolean integerIds = hasIntegerIds(entityClass, entities, liveEntities);
+
+    // Generated ids follow file order
+    if (integerIds)
+      Collections.sort(entities, new IntegerIdComparator());
+
+    List<Object> added = new ArrayList<Object>();
+    List<Object> removed = new ArrayList<Object>();
+
+    if (liveEntities.isEmpty()) {
+      added.addAll(entities);
+    } else if (integerIds) {
+      diffByContent(entityClass, entities, liveEntities, added, removed);
+    } else {
+      delta.updated = diffById(entityClass, entities, liveEntities, added,
+          removed);
+    }
+
+    for (Object entity : removed)
+      removeEntity(entity);
+
+    if (integerIds) {
+      for (Object entity : added)
+        setId(entity, 0);
+    }
+
+    _dao.saveEntities(added);
+
+    delta.added = added.size();
+    delta.removed = removed.size();
+    return delta;
+  }
+
+  /**
+   * Matches entities without an identity by their csv content, as a multiset,
+   * keeping only the hash codes of the live entities' content in memory
+   */
+  private void diffByContent(Class<?> entityClass, List<Object> entities,
+      List<Object> liveEntities, List<Object> added, List<Object> removed) {
+
+    Map<Integer, List<Object>> liveByHash = new HashMap<Integer, List<Object>>();
+
+    for (Object entity : liveEntities) {
+      Integer hash = getContent(entityClass, entity).hashCode();
+      List<Object> candidates = liveByHash.get(hash);
+      if (candidates == null) {
+        candidates = new LinkedList<Object>();
+        liveByHash.put(hash, candidates);
+      }
+      candidates.add(entity);
+    }
+
+    for (Object entity : entities) {
+      String content = getContent(entityClass, entity);
+      List<Object> candidates = liveByHash.get(content.hashCode());
+      if (!removeMatch(entityClass, candidates, content))
+        added.add(entity);
+    }
+
+    for (List<Object> candidates : liveByHash.values())
+      removed.addAll(candidates);
+  }
+
+  private boolean removeMatch(Class<?> entityClass, List<Object> candidates,
+      String content) {
+    if (candidates == null)
+      return false;
+    for (int i = 0; i < candidates.size(); i++) {
+      if (content.equals(getContent(entityClass, candidates.get(i)))) {
+        candidates.remove(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of live entities updated in place
+   */
+  private int diffById(Class<?> entityClass, List<Object> entities,
+      List<Object> liveEntities, List<Object> added, List<Object> removed) {
+
+    Map<Object, Object> entitiesById = new LinkedHashMap<Object, Object>();
+    for (Object entity : entities)
+      entitiesById.put(getId(entity), entity);
+
+    int updated = 0;
+
+    for (Object live : liveEntities) {
+      Object entity = entitiesById.remove(getId(live));
+      if (entity == null) {
+        removed.add(live);
+      } else if (!getContent(entityClass, entity).equals(
+          getContent(entityClass, live))) {
+        copyFields(entity, live);
+        updated++;
+      }
+    }
+
+    added.addAll(entitiesById.values());
+    return updated;
+  }
+
+  /**
+   * @return the entity as the csv values its schema would write for it
+   */
+  private String getContent(Class<?> entityClass, Object entity) {
+
+    EntitySchema schema = _schemaFactory.getSchema(entityClass);
+    BeanWrapper wrapper = BeanWrapperFactory.wrap(entity);
+    Map<String, Object> csvValues = new HashMap<String, Object>();
+    List<String> fieldNames = new ArrayList<String>();
+
+    for (FieldMapping field : schema.getFields()) {
+      field.translateFromObjectToCSV(_context, wrapper, csvValues);
+      field.getCSVFieldNames(fieldNames);
+    }
+
+    List<Object> values = new ArrayList<Object>(fieldNames.size());
+    for (String fieldName : fieldNames) {
+      Object value = csvValues.get(fieldName);
+      values.add(value == null ? "" : value);
+    }
+    return CSVLibrary.getIterableAsCSV(values);
+  }
+
+  private void copyFields(Object from, Object to) {
+    try {
+      for (Field field : getFields(from.getClass()))
+        field.set(to, field.get(from));
+    } catch (IllegalAccessException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private List<Field> getFields(Class<?> entityClass) {
+    List<Field> fields = _fieldsByEntityClass.get(entityClass);
+    if (fields == null) {
+      fields = new ArrayList<Field>();
+      for (Class<?> c = entityClass; c != Object.class; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          int modifiers = field.getModifiers();
+          if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers))
+            continue;
+          field.setAccessible(true);
+          fields.add(field);
+        }
+      }
+      _fieldsByEntityClass.put(entityClass, fields);
+    }
+    return fields;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void removeEntity(Object entity) {
+    _dao.removeEntity((IdentityBean<Serializable>) entity);
+  }
+
+  private static boolean hasIntegerIds(Class<?> entityClass,
+      List<Object> entities, List<Object> liveEntities) {
+    Object entity = !entities.isEmpty() ? entities.get(0)
+        : (!liveEntities.isEmpty() ? liveEntities.get(0) : null);
+    return entity != null && getId(entity) instanceof Integer;
+  }
+
+  private static Object getId(Object entity) {
+    return ((IdentityBean<?>) entity).getId();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void setId(Object entity, Integer id) {
+    ((IdentityBean<Serializable>) entity).setId(id);
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static class IntegerIdComparator implements Comparator<Object> {
+
+    @Override
+    public int compare(Object o1, Object o2) {
+      int id1 = (Integer) getId(o1);
+      int id2 = (Integer) getId(o2);
+      return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+    }
+  }
+
+  /**
+   * Reads changed files, resolving references to entities of unchanged files
+   * against the live store
+   */
+  private class ReloadReader extends GtfsReader {
+
+    private Set<Class<?>> _readClasses = new HashSet<Class<?>>();
+
+    private Map<Class<?>, Map<String, String>> _liveAgencyIdsByEntityClass = new HashMap<Class<?>, Map<String, String>>();
+
+    public void addReadClass(Class<?> entityClass) {
+      _readClasses.add(entityClass);
+    }
+
+    @Override
+    protected Object getEntity(Class<?> entityClass, Serializable id) {
+      return _dao.getEntityForId(entityClass, id);
+    }
+
+    @Override
+    protected String getAgencyForEntity(Class<?> entityType, String entityId) {
+
+      if (_readClasses.contains(entityType))
+        return super.getAgencyForEntity(entityType, entityId);
+
+      String agencyId = getLiveAgencyIds(entityType).get(entityId);
+      if (agencyId == null)
+        throw new EntityReferenceNotFoundException(entityType, entityId);
+      return agencyId;
+    }
+
+    /**
+     * The live entities of a type that isn't read don't change during a load,
+     * so they only need to be indexed once
+     */
+    private Map<String, String> getLiveAgencyIds(Class<?> entityType) {
+      Map<String, String> agencyIds = _liveAgencyIdsByEntityClass.get(entityType);
+      if (agencyIds == null) {
+        agencyIds = new HashMap<String, String>();
+        for (Object entity : _dao.getAllEntitiesForType(entityType)) {
+          Object id = getId(entity);
+          if (id instanceof AgencyAndId) {
+            AgencyAndId agencyAndId = (AgencyAndId) id;
+            agencyIds.put(agencyAndId.getId(), agencyAndId.getAgencyId());
+          }
+        }
+        _liveAgencyIdsByEntityClass.put(entityType, agencyIds);
+      }
+      return agencyIds;
+    }
+  }
+
+  /**
+   * The entities added, removed and updated for a changed file
+   */
+  public static class FileDelta {
+
+    private final Class<?> _entityClass;
+
+    private final String _filename;
+
+    private int added;
+
+    private int removed;
+
+    private int updated;
+
+    public FileDelta(Class<?> entityClass, String filename) {
+      _entityClass = entityClass;
+      _filename = filename;
+    }
+
+    public Class<?> getEntityClass() {
+      return _entityClass;
+    }
+
+    public String getFilename() {
+      return _filename;
+    }
+
+    public int getAdded() {
+      return added;
+    }
+
+    public int getRemoved() {
+      return removed;
+    }
+
+    public int getUpdated() {
+      return updated;
+    }
+
+    @Override
+    public String toString() {
+      return _filename + ": added=" + added + " removed=" + removed
+          + " updated=" + updated;
+    }
+  }
+}
@@ -0,0 +1,391 @@
+package org.onebusaway.gtfs.serialization;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.onebusaway.gtfs.csv.StringPool;
+import org.onebusaway.gtfs.impl.GtfsDaoImpl;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.IdentityBean;
+import org.onebusaway.gtfs.services.GtfsMutableRelationalDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads several GTFS feeds into a single {@link GtfsMutableRelationalDao}.
+ * Each feed is read by its own {@link GtfsReader} into an isolated store,
+ * with up to {@link #setFeedParallelism(int)} feeds read concurrently, and the
+ * stores are then merged into the target store in the order the feeds were
+ * added. All the readers share a {@link StringPool} and an
+ * {@link AgencyAndIdPool}.
+ *
+ * Before any feed is read, the agency.txt of each feed is read to detect agency
+ * ids used by more than one feed, which are then resolved according to the
+ * {@link EAgencyIdCollisionPolicy} by mapping agency ids with
+ * {@link GtfsReader#addAgencyIdMapping(String, String)}. Integer entity ids,
+ * such as those of stop times, are only unique within a feed, so they are
+ * reset when merged for the target store to assign new ones.
+ */
+public class GtfsMultiFeedReader {
+
+  private static Logger _log = LoggerFactory.getLogger(GtfsMultiFeedReader.class);
+
+  public enum EAgencyIdCollisionPolicy {
+    /**
+     * Fail with an {@link AgencyIdCollisionException}
+     */
+    FAIL,
+    /**
+     * Prefix the colliding agency id of the later feed with the feed name
+     */
+    PREFIX
+  }
+
+  private List<Feed> _feeds = new ArrayList<Feed>();
+
+  private GtfsMutableRelationalDao _entityStore = new GtfsRelationalDaoImpl();
+
+  private EAgencyIdCollisionPolicy _collisionPolicy = EAgencyIdCollisionPolicy.FAIL;
+
+  private int _feedParallelism = Runtime.getRuntime().availableProcessors();
+
+  private StringPool _stringPool = new StringPool();
+
+  private AgencyAndIdPool _agencyAndIdPool = new AgencyAndIdPool();
+
+  /**
+   * @param name a name for the feed, unique among the feeds, used in errors and
+   *          as the prefix of colliding agency ids
+   * @param path the feed directory or zip file
+   * @return the feed, which can be configured further
+   */
+  public Feed addFeed(String name, File path) {
+    for (Feed feed : _feeds) {
+      if (feed.getName().equals(name))
+        throw new IllegalArgumentException("duplicate feed name: " + name);
+    }
+    Feed feed = new Feed(name, path);
+    _feeds.add(feed);
+    return feed;
+  }
+
+  public List<Feed> getFeeds() {
+    return _feeds;
+  }
+
+  public GtfsMutableRelationalDao getEntityStore() {
+    return _entityStore;
+  }
+
+  public void setEntityStore(GtfsMutableRelationalDao entityStore) {
+    _entityStore = entityStore;
+  }
+
+  public void setAgencyIdCollisionPolicy(
+      EAgencyIdCollisionPolicy collisionPolicy) {
+    _collisionPolicy = collisionPolicy;
+  }
+
+  /**
+   * @param feedParallelism the number of feeds read at the same time, the
+   *          number of processors by default
+   */
+  public void setFeedParallelism(int feedParallelism) {
+    if (feedParallelism < 1)
+      throw new IllegalArgumentException("feed parallelism must be positive");
+    _feedParallelism = feedParallelism;
+  }
+
+  public StringPool getStringPool() {
+    return _stringPool;
+  }
+
+  public AgencyAndIdPool getAgencyAndIdPool() {
+    return _agencyAndIdPool;
+  }
+
+  public void run() throws IOException {
+
+    Set<String> agencyIds = new HashSet<String>();
+    List<GtfsReader> readers = new ArrayList<GtfsReader>();
+
+    try {
+      for (Feed feed : _feeds) {
+        GtfsReader reader = createReader(feed);
+        readers.add(reader);
+        configureReader(feed, reader, agencyIds);
+      }
+
+      List<GtfsRelationalDaoImpl> stores = readFeeds(readers);
+
+      _entityStore.open();
+
+      for (int i = 0; i < stores.size(); i++) {
+        _log.info("merging feed: " + _feeds.get(i).getName());
+        mergeStore(readers.get(i), stores.get(i));
+        _entityStore.flush();
+      }
+
+      _entityStore.close();
+
+      if (_entityStore instanceof GtfsRelationalDaoImpl)
+        ((GtfsRelationalDaoImpl) _entityStore).clearAllCaches();
+    } finally {
+      for (GtfsReader reader : readers)
+        reader.close();
+    }
+  }
+
+  /****
+   * Protected Methods
+   ****/
+
+  /**
+   * Creates the reader for a feed, which is then configured with the agency id
+   * mappings, pools and entity store of the load. Subclasses can override it to
+   * customize the reader.
+   */
+  protected GtfsReader createReader(Feed feed) throws IOException {
+    GtfsReader reader = new GtfsReader();
+    reader.setInputLocation(feed.getPath());
+    return reader;
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private void configureReader(Feed feed, GtfsReader reader,
+      Set<String> agencyIds) throws IOException {
+
+    GtfsReader agencyReader = new GtfsReader();
+    agencyReader.setEntityClasses(Collections.<Class<?>> singletonList(Agency.class));
+    agencyReader.setInputLocation(feed.getPath());
+    agencyReader.setEntityStore(new GtfsDaoImpl());
+    agencyReader.setEntityCountHints(false);
+    agencyReader.setReadAhead(false);
+    if (feed.getDefaultAgencyId() != null)
+      agencyReader.setDefaultAgencyId(feed.getDefaultAgencyId());
+
+    try {
+      agencyReader.run();
+    } finally {
+      agencyReader.close();
+    }
+
+    Map<String, String> mappedIds = new LinkedHashMap<String, String>();
+
+    for (Agency agency : agencyReader.getAgencies()) {
+      String agencyId = agency.getId();
+      String mappedId = getMappedAgencyId(feed, agencyId, agencyIds);
+      agencyIds.add(mappedId);
+      mappedIds.put(agencyId, mappedId);
+      if (!mappedId.equals(agencyId))
+        reader.addAgencyIdMapping(agencyId, mappedId);
+    }
+
+    String defaultAgencyId = agencyReader.getDefaultAgencyId();
+    String mappedDefaultAgencyId = mappedIds.get(defaultAgencyId);
+    reader.setDefaultAgencyId(mappedDefaultAgencyId != null
+        ? mappedDefaultAgencyId : defaultAgencyId);
+
+    reader.setStringPool(_stringPool);
+    reader.setAgencyAndIdPool(_agencyAndIdPool);
+  }
+
+  private String getMappedAgencyId(Feed feed, String agencyId,
+      Set<String> agencyIds) {
+
+    String mappedId = agencyId;
+    if (feed.getAgencyIdPrefix() != null)
+      mappedId = feed.getAgencyIdPrefix() + agencyId;
+
+    if (!agencyIds.contains(mappedId))
+      return mappedId;
+
+    if (_collisionPolicy == EAgencyIdCollisionPolicy.PREFIX
+        && feed.getAgencyIdPrefix() == null) {
+      mappedId = feed.getName() + "_" + agencyId;
+      if (!agencyIds.contains(mappedId))
+        return mappedId;
+    }
+
+    throw new AgencyIdCollisionException(feed.getName(), mappedId);
+  }
+
+  /**
+   * Reads each feed into its own store, with up to the feed parallelism feeds
+   * read at once
+   */
+  private List<GtfsRelationalDaoImpl> readFeeds(List<GtfsReader> readers)
+      throws IOException {
+
+    List<Future<GtfsRelationalDaoImpl>> futures = new ArrayList<Future<GtfsRelationalDaoImpl>>();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+        _feedParallelism, Math.max(readers.size(), 1)));
+
+    try {
+      for (int i = 0; i < readers.size(); i++)
+        futures.add(executor.submit(new ReadFeedTask(_feeds.get(i),
+            readers.get(i))));
+
+      List<GtfsRelationalDaoImpl> stores = new ArrayList<GtfsRelationalDaoImpl>();
+
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          stores.add(futures.get(i).get());
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new IOException("interrupted while reading feed: "
+              + _feeds.get(i).getName());
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause();
+          if (cause instanceof IOException)
+            throw (IOException) cause;
+          if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+          if (cause instanceof Error)
+            throw (Error) cause;
+          throw new IllegalStateException(cause);
+        }
+      }
+
+      return stores;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Moves the entities of a feed's store to the target store, one entity type
+   * at a time in the order the reader read them
+   */
+  private void mergeStore(GtfsReader reader, GtfsRelationalDaoImpl store) {
+
+    for (Class<?> entityClass : reader.getEntityClasses()) {
+
+      Collection<?> entities = store.getAllEntitiesForType(entityClass);
+      if (entities.isEmpty())
+        continue;
+
+      List<Object> entitiesToSave = new ArrayList<Object>(entities);
+      resetIntegerIds(entitiesToSave);
+
+      _entityStore.saveEntities(entitiesToSave);
+      store.clearAllEntitiesForType(entityClass);
+    }
+  }
+
+  /**
+   * Integer ids are generated per feed, so they're reset for the target store
+   * to generate new ones, in the original order
+   */
+  @SuppressWarnings("unchecked")
+  private static void resetIntegerIds(List<Object> entities) {
+
+    Object first = entities.get(0);
+    if (!(first instanceof IdentityBean<?>)
+        || !(((IdentityBean<?>) first).getId() instanceof Integer))
+      return;
+
+    Collections.sort(entities, new IntegerIdComparator());
+
+    for (Object entity : entities)
+      ((IdentityBean<Serializable>) entity).setId(0);
+  }
+
+  private static class IntegerIdComparator implements Comparator<Object> {
+
+    @Override
+    public int compare(Object o1, Object o2) {
+      int id1 = (Integer) ((IdentityBean<?>) o1).getId();
+      int id2 = (Integer) ((IdentityBean<?>) o2).getId();
+      return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+    }
+  }
+
+  private static class ReadFeedTask implements Callable<GtfsRelationalDaoImpl> {
+
+    private final Feed _feed;
+
+    private final GtfsReader _reader;
+
+    public ReadFeedTask(Feed feed, GtfsReader reader) {
+      _feed = feed;
+      _reader = reader;
+    }
+
+    @Override
+    public GtfsRelationalDaoImpl call() throws IOException {
+      _log.info("reading feed: " + _feed.getName());
+      GtfsRelationalDaoImpl store = new GtfsRelationalDaoImpl();
+      _reader.setEntityStore(store);
+      _reader.run();
+      return store;
+    }
+  }
+
+  public static class Feed {
+
+    private final String _name;
+
+    private final File _path;
+
+    private String _defaultAgencyId;
+
+    private String _agencyIdPrefix;
+
+    public Feed(String name, File path) {
+      _name = name;
+      _path = path;
+    }
+
+    public String getName() {
+      return _name;
+    }
+
+    public File getPath() {
+      return _path;
+    }
+
+    public String getDefaultAgencyId() {
+      return _defaultAgencyId;
+    }
+
+    /**
+     * @param defaultAgencyId the agency id of entities that don't specify one,
+     *          and of agencies without an agency_id, before any prefix
+     */
+    public void setDefaultAgencyId(String defaultAgencyId) {
+      _defaultAgencyId = defaultAgencyId;
+    }
+
+    public String getAgencyIdPrefix() {
+      return _agencyIdPrefix;
+    }
+
+    /**
+     * @param agencyIdPrefix when set, a prefix added to every agency id of the
+     *          feed, whether or not it collides with another feed's
+     */
+    public void setAgencyIdPrefix(String agencyIdPrefix) {
+      _agencyIdPrefix = agencyIdPrefix;
+    }
+  }
+}
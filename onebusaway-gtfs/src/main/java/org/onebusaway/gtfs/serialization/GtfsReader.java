@@ -1,17 +1,47 @@
 package org.onebusaway.gtfs.serialization;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.onebusaway.gtfs.csv.CsvEntityContext;
 import org.onebusaway.gtfs.csv.CsvEntityReader;
 import org.onebusaway.gtfs.csv.CsvInputSource;
+import org.onebusaway.gtfs.csv.BatchEntityHandler;
+import org.onebusaway.gtfs.csv.ByteBufferCsvInputSource;
+import org.onebusaway.gtfs.csv.CharBufferTokenizerStrategy;
 import org.onebusaway.gtfs.csv.EntityHandler;
+import org.onebusaway.gtfs.csv.ExternalCsvSorter;
+import org.onebusaway.gtfs.csv.PrefetchingCsvInputSource;
+import org.onebusaway.gtfs.csv.PrefetchingZipFileCsvInputSource;
+import org.onebusaway.gtfs.csv.SizedCsvInputSource;
+import org.onebusaway.gtfs.csv.schema.AbstractFieldMapping;
 import org.onebusaway.gtfs.csv.schema.DefaultEntitySchemaFactory;
+import org.onebusaway.gtfs.csv.schema.EntitySchema;
+import org.onebusaway.gtfs.csv.schema.EntitySchemaFactory;
+import org.onebusaway.gtfs.csv.schema.FieldMapping;
+import org.onebusaway.gtfs.csv.schema.ProjectingEntitySchemaFactory;
 import org.onebusaway.gtfs.impl.GtfsDaoImpl;
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
@@ -28,6 +58,7 @@ import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.StopTime;
 import org.onebusaway.gtfs.model.Transfer;
 import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.serialization.comparators.StopTimeComparator;
 import org.onebusaway.gtfs.services.GenericMutableDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +70,13 @@ public class GtfsReader extends CsvEntityReader {
   public static final String KEY_CONTEXT = GtfsReader.class.getName()
       + ".context";
 
+  /**
+   * Files smaller than this aren't worth estimating the row count of
+   */
+  private static final long MIN_SIZE_FOR_COUNT_HINT = 256 * 1024;
+
+  private static final int ROW_LENGTH_SAMPLE_SIZE = 64 * 1024;
+
   private List<Class<?>> _entityClasses = new ArrayList<Class<?>>();
 
   private GtfsReaderContextImpl _context = new GtfsReaderContextImpl();
@@ -47,12 +85,31 @@ public class GtfsReader extends CsvEntityReader {
 
   private List<Agency> _agencies = new ArrayList<Agency>();
 
-  private Map<Class<?>, Map<String, String>> _agencyIdsByEntityClassAndId = new HashMap<Class<?>, Map<String, String>>();
+  private ConcurrentMap<Class<?>, Map<String, String>> _agencyIdsByEntityClassAndId = new ConcurrentHashMap<Class<?>, Map<String, String>>();
 
   private String _defaultAgencyId;
 
   private Map<String, String> _agencyIdMapping = new HashMap<String, String>();
 
+  private boolean _readAhead = false;
+
+  private boolean _entityCountHints = true;
+
+  private int _fileParallelism = 1;
+
+  private TripStopTimesHandler _tripStopTimesHandler;
+
+  private ExternalCsvSorter _stopTimesSorter = new ExternalCsvSorter();
+
+  /**
+   * Set while stop times are being passed to the trip stop times handler
+   */
+  private volatile StopTimeGrouper _stopTimeGrouper;
+
+  private AgencyAndIdPool _agencyAndIdPool = new AgencyAndIdPool();
+
+  private ConcurrentHashMap<Class<?>, EntityReferenceResolver> _resolversByEntityType = new ConcurrentHashMap<Class<?>, EntityReferenceResolver>();
+
   public GtfsReader() {
 
     _entityClasses.add(Agency.class);
@@ -81,6 +138,7 @@ public class GtfsReader extends CsvEntityReader {
     ctx.put(KEY_CONTEXT, _context);
 
     addEntityHandler(new EntityHandlerImpl());
+    addBatchEntityHandler(new EntityStoreHandlerImpl());
   }
 
   public List<Agency> getAgencies() {
@@ -107,6 +165,106 @@ public class GtfsReader extends CsvEntityReader {
     _entityStore = entityStore;
   }
 
+  /**
+   * Restrict the properties that are read for an entity class. The values of
+   * unselected columns are never converted or set on the entity, though the
+   * entity id, required fields and fields they depend on are always read.
+   * 
+   * The default tokenizer still creates a String for every column of each
+   * row. Only the row tokenizers, such as a {@link CharBufferTokenizerStrategy}
+   * set with {@link #setTokenizerStrategy(org.onebusaway.gtfs.csv.TokenizerStrategy)}
+   * or the one used for a {@link ByteBufferCsvInputSource}, skip creating the
+   * values of unselected columns.
+   * 
+   * @see ProjectingEntitySchemaFactory
+   */
+  public void setProjection(Class<?> entityClass, String... propertyNames) {
+    EntitySchemaFactory schemaFactory = getEntitySchemaFactory();
+    ProjectingEntitySchemaFactory projectingFactory = null;
+    if (schemaFactory instanceof ProjectingEntitySchemaFactory) {
+      projectingFactory = (ProjectingEntitySchemaFactory) schemaFactory;
+    } else {
+      projectingFactory = new ProjectingEntitySchemaFactory(schemaFactory);
+      setEntitySchemaFactory(projectingFactory);
+    }
+    projectingFactory.setProjection(entityClass, Arrays.asList(propertyNames));
+  }
+
+  /**
+   * @param readAhead when true, the next files of the feed are read ahead on a
+   *          background thread while the current one is parsed, which
+   *          requires the input source to be thread-safe. Off by default.
+   *          Sources that are already in memory or already prefetching are
+   *          read as is.
+   * 
+   * @see PrefetchingCsvInputSource
+   */
+  public void setReadAhead(boolean readAhead) {
+    _readAhead = readAhead;
+  }
+
+  /**
+   * @param entityCountHints when true, the default, the number of rows of
+   *          each large file is estimated from its size and the average
+   *          length of its first rows, and passed to the entity store with
+   *          {@link GenericMutableDao#setEntityCountHint(Class, int)} before
+   *          the feed is read. Requires a {@link SizedCsvInputSource} that
+   *          isn't already prefetching.
+   */
+  public void setEntityCountHints(boolean entityCountHints) {
+    _entityCountHints = entityCountHints;
+  }
+
+  /**
+   * @param fileParallelism the number of files that can be read at the same
+   *          time, 1 by default. When greater than 1, each file is read as
+   *          soon as the files it depends on (see
+   *          {@link #getEntityClassDependencies(List)}) have been read, so
+   *          that independent files such as shapes.txt and stops.txt are read
+   *          concurrently. Access to the entity store is serialized by the
+   *          reader, so any {@link GenericMutableDao} can be used, but
+   *          additional {@link EntityHandler}s must be thread-safe. Files are
+   *          not read ahead in this mode, since they are no longer requested
+   *          in order.
+   */
+  public void setFileParallelism(int fileParallelism) {
+    if (fileParallelism < 1)
+      throw new IllegalArgumentException("file parallelism must be positive");
+    _fileParallelism = fileParallelism;
+  }
+
+  /**
+   * @param tripStopTimesHandler when set, stop times are passed to the handler
+   *          one trip at a time and are not saved to the entity store, so that
+   *          only the stop times of a single trip are held at once. If
+   *          stop_times.txt isn't grouped by trip, it's first sorted by trip
+   *          into a temporary file (see {@link #getStopTimesSorter()}).
+   *          Grouping relies on stop times being read in file order, so
+   *          {@link #setPreserveOrder(boolean)} must not be disabled.
+   */
+  public void setTripStopTimesHandler(TripStopTimesHandler tripStopTimesHandler) {
+    _tripStopTimesHandler = tripStopTimesHandler;
+  }
+
+  /**
+   * @return the sorter used to group stop_times.txt by trip when it isn't
+   *         already, which can be configured with a temporary directory
+   */
+  public ExternalCsvSorter getStopTimesSorter() {
+    return _stopTimesSorter;
+  }
+
+  /**
+   * @return the pool that ids read by this reader are interned in
+   */
+  public AgencyAndIdPool getAgencyAndIdPool() {
+    return _agencyAndIdPool;
+  }
+
+  public void setAgencyAndIdPool(AgencyAndIdPool agencyAndIdPool) {
+    _agencyAndIdPool = agencyAndIdPool;
+  }
+
   public List<Class<?>> getEntityClasses() {
     return _entityClasses;
   }
@@ -122,17 +280,52 @@ public class GtfsReader extends CsvEntityReader {
   public void run(CsvInputSource source) throws IOException {
 
     List<Class<?>> classes = getEntityClasses();
+    List<String> filenames = getFilenamesForEntityClasses(classes);
+
+    if (_entityCountHints)
+      hintEntityCounts(source, classes);
+
+    PrefetchingCsvInputSource readAheadSource = null;
+
+    if (_fileParallelism > 1) {
+      // Prefetched files that are requested out of order would be wasted
+    } else if (source instanceof PrefetchingZipFileCsvInputSource) {
+      ((PrefetchingZipFileCsvInputSource) source).prefetch(filenames);
+    } else if (source instanceof PrefetchingCsvInputSource) {
+      ((PrefetchingCsvInputSource) source).prefetch(filenames);
+    } else if (_readAhead && source != null
+        && !(source instanceof ByteBufferCsvInputSource)) {
+      readAheadSource = new PrefetchingCsvInputSource(source);
+      readAheadSource.prefetch(filenames);
+      source = readAheadSource;
+    }
 
-    _entityStore.open();
+    _resolversByEntityType.clear();
+    clearRejectedIds();
 
-    for (Class<?> entityClass : classes) {
-      _log.info("reading entities: " + entityClass.getName());
+    try {
 
-      readEntities(entityClass, source);
-      _entityStore.flush();
-    }
+      _entityStore.open();
+
+      if (_fileParallelism > 1) {
+        readEntitiesConcurrently(classes, source);
+      } else {
+        for (Class<?> entityClass : classes) {
+          _log.info("reading entities: " + entityClass.getName());
+
+          readEntitiesOfClass(entityClass, source);
+          flushEntityStore();
+        }
+      }
+
+      _entityStore.close();
 
-    _entityStore.close();
+    } finally {
+      _resolversByEntityType.clear();
+      // The wrapped source belongs to the caller, so it's left open
+      if (readAheadSource != null)
+        readAheadSource.cancelPrefetch();
+    }
   }
 
   /****
@@ -143,12 +336,60 @@ public class GtfsReader extends CsvEntityReader {
     return GtfsEntitySchemaFactory.createEntitySchemaFactory();
   }
 
+  protected List<String> getFilenamesForEntityClasses(List<Class<?>> classes) {
+    EntitySchemaFactory schemaFactory = getEntitySchemaFactory();
+    List<String> filenames = new ArrayList<String>();
+    for (Class<?> entityClass : classes)
+      filenames.add(schemaFactory.getSchema(entityClass).getFilename());
+    return filenames;
+  }
+
+  /**
+   * Determines the order in which files can be read when
+   * {@link #setFileParallelism(int)} is greater than 1. An entity class
+   * depends on the classes earlier in the list that its fields refer to, and
+   * on {@link Agency}, which provides the default agency id. Later classes are
+   * never depended on, so the sequential read order is always respected.
+   * 
+   * @return the classes that must be read before each entity class
+   */
+  protected Map<Class<?>, Set<Class<?>>> getEntityClassDependencies(
+      List<Class<?>> classes) {
+
+    EntitySchemaFactory schemaFactory = getEntitySchemaFactory();
+    Map<Class<?>, Set<Class<?>>> dependencies = new HashMap<Class<?>, Set<Class<?>>>();
+
+    for (int i = 0; i < classes.size(); i++) {
+
+      Class<?> entityClass = classes.get(i);
+      List<Class<?>> earlierClasses = classes.subList(0, i);
+      Set<Class<?>> dependsOn = new LinkedHashSet<Class<?>>();
+
+      if (earlierClasses.contains(Agency.class))
+        dependsOn.add(Agency.class);
+
+      for (FieldMapping field : schemaFactory.getSchema(entityClass).getFields()) {
+        if (!(field instanceof AbstractFieldMapping))
+          continue;
+        Class<?> referencedType = ((AbstractFieldMapping) field).getReferencedEntityType();
+        if (referencedType != null && earlierClasses.contains(referencedType))
+          dependsOn.add(referencedType);
+      }
+
+      dependencies.put(entityClass, dependsOn);
+    }
+
+    return dependencies;
+  }
+
   protected Object getEntity(Class<?> entityClass, Serializable id) {
     if (entityClass == null)
       throw new IllegalArgumentException("entity class must not be null");
     if (id == null)
       throw new IllegalArgumentException("entity id must not be null");
-    return _entityStore.getEntityForId(entityClass, id);
+    synchronized (_entityStore) {
+      return _entityStore.getEntityForId(entityClass, id);
+    }
   }
 
   protected String getDefaultAgencyId() {
@@ -179,6 +420,173 @@ public class GtfsReader extends CsvEntityReader {
     throw new EntityReferenceNotFoundException(entityType, entityId);
   }
 
+  /****
+   * Private Methods
+   ****/
+
+  /**
+   * Reads each file on a pool of {@link #setFileParallelism(int)} threads once
+   * the files it depends on have been read. Tasks are submitted in the order
+   * of the entity classes and only wait on tasks submitted before them, so
+   * the pool can't deadlock.
+   */
+  private void readEntitiesConcurrently(List<Class<?>> classes,
+      CsvInputSource source) throws IOException {
+
+    Map<Class<?>, Set<Class<?>>> dependencies = getEntityClassDependencies(classes);
+    Map<Class<?>, Future<Void>> futures = new LinkedHashMap<Class<?>, Future<Void>>();
+
+    ExecutorService executor = Executors.newFixedThreadPool(_fileParallelism,
+        new ReaderThreadFactory());
+
+    try {
+      for (Class<?> entityClass : classes) {
+        List<Future<Void>> dependsOn = new ArrayList<Future<Void>>();
+        for (Class<?> dependency : dependencies.get(entityClass))
+          dependsOn.add(futures.get(dependency));
+        futures.put(entityClass, executor.submit(new ReadEntitiesTask(
+            entityClass, source, dependsOn)));
+      }
+
+      for (Map.Entry<Class<?>, Future<Void>> entry : futures.entrySet()) {
+        try {
+          entry.getValue().get();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new IOException("interrupted while reading entities: "
+              + entry.getKey().getName());
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause();
+          if (cause instanceof IOException)
+            throw (IOException) cause;
+          if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+          if (cause instanceof Error)
+            throw (Error) cause;
+          throw new IllegalStateException(cause);
+        }
+      }
+    } finally {
+      // Stops the files still waiting on a dependency if one of them failed
+      executor.shutdownNow();
+    }
+  }
+
+  private void readEntitiesOfClass(Class<?> entityClass, CsvInputSource source)
+      throws IOException {
+    if (entityClass == StopTime.class && _tripStopTimesHandler != null)
+      readStopTimesByTrip(source);
+    else
+      readEntities(entityClass, source);
+  }
+
+  private void readStopTimesByTrip(CsvInputSource source) throws IOException {
+
+    EntitySchema schema = getEntitySchemaFactory().getSchema(StopTime.class);
+    String name = schema.getFilename();
+    String tripField = getTripFieldName(schema);
+
+    StopTimeGrouper grouper = new StopTimeGrouper();
+    File sortedFile = null;
+    _stopTimeGrouper = grouper;
+
+    try {
+      if (source.hasResource(name)
+          && !_stopTimesSorter.isGrouped(source.getResource(name), tripField)) {
+        _log.info("sorting stop times by trip: " + name);
+        sortedFile = _stopTimesSorter.sort(source.getResource(name), tripField);
+        readEntities(StopTime.class, new FileInputStream(sortedFile));
+      } else {
+        readEntities(StopTime.class, source);
+      }
+      grouper.flush();
+    } finally {
+      _stopTimeGrouper = null;
+      if (sortedFile != null)
+        sortedFile.delete();
+    }
+  }
+
+  private static String getTripFieldName(EntitySchema schema) {
+    for (FieldMapping field : schema.getFields()) {
+      if (field instanceof AbstractFieldMapping) {
+        AbstractFieldMapping mapping = (AbstractFieldMapping) field;
+        if (mapping.getReferencedEntityType() == Trip.class)
+          return mapping.getCsvFieldName();
+      }
+    }
+    return "trip_id";
+  }
+
+  private void flushEntityStore() {
+    synchronized (_entityStore) {
+      _entityStore.flush();
+    }
+  }
+
+  private void hintEntityCounts(CsvInputSource source, List<Class<?>> classes) {
+
+    // Sampling a prefetching source would take over its prefetched streams
+    if (!(source instanceof SizedCsvInputSource)
+        || source instanceof PrefetchingCsvInputSource
+        || source instanceof PrefetchingZipFileCsvInputSource)
+      return;
+
+    SizedCsvInputSource sizedSource = (SizedCsvInputSource) source;
+    EntitySchemaFactory schemaFactory = getEntitySchemaFactory();
+
+    for (Class<?> entityClass : classes) {
+      String name = schemaFactory.getSchema(entityClass).getFilename();
+      try {
+        long size = sizedSource.getResourceSize(name);
+        if (size < MIN_SIZE_FOR_COUNT_HINT)
+          continue;
+        double rowLength = sampleRowLength(source, name);
+        if (rowLength <= 0)
+          continue;
+        long rows = (long) (size / rowLength);
+        _entityStore.setEntityCountHint(entityClass,
+            (int) Math.min(rows, Integer.MAX_VALUE / 2));
+      } catch (IOException ex) {
+        // Errors are left to surface when the file is actually read
+      }
+    }
+  }
+
+  /**
+   * @return the average length in bytes of the complete rows at the start of
+   *         the resource, or -1 if there are none
+   */
+  private static double sampleRowLength(CsvInputSource source, String name)
+      throws IOException {
+
+    InputStream in = source.getResource(name);
+
+    try {
+      byte[] buffer = new byte[ROW_LENGTH_SAMPLE_SIZE];
+      int length = 0;
+      while (length < buffer.length) {
+        int n = in.read(buffer, length, buffer.length - length);
+        if (n == -1)
+          break;
+        length += n;
+      }
+
+      int rows = 0;
+      int endOfLastRow = 0;
+      for (int i = 0; i < length; i++) {
+        if (buffer[i] == '\n') {
+          rows++;
+          endOfLastRow = i + 1;
+        }
+      }
+
+      return rows == 0 ? -1 : (double) endOfLastRow / rows;
+    } finally {
+      in.close();
+    }
+  }
+
   /****
    * Private Internal Classes
    ****/
@@ -187,6 +595,10 @@ public class GtfsReader extends CsvEntityReader {
 
     public void handleEntity(Object entity) {
 
+      // Entities resolved so far no longer cover every entity of the type
+      if (!_resolversByEntityType.isEmpty())
+        _resolversByEntityType.remove(entity.getClass());
+
       if (entity instanceof Agency) {
         Agency agency = (Agency) entity;
         if (agency.getId() == null) {
@@ -216,12 +628,11 @@ public class GtfsReader extends CsvEntityReader {
       } else if (entity instanceof FareAttribute) {
         FareAttribute fare = (FareAttribute) entity;
         registerAgencyId(FareAttribute.class, fare.getId());
+      } else if (entity instanceof StopTime) {
+        StopTimeGrouper grouper = _stopTimeGrouper;
+        if (grouper != null)
+          grouper.add((StopTime) entity);
       }
-
-      if (entity instanceof IdentityBean<?>) {
-        _entityStore.saveEntity(entity);
-      }
-
     }
 
     private void registerAgencyId(Class<?> entityType, AgencyAndId id) {
@@ -230,13 +641,132 @@ public class GtfsReader extends CsvEntityReader {
 
       if (agencyIdsByEntityId == null) {
         agencyIdsByEntityId = new HashMap<String, String>();
-        _agencyIdsByEntityClassAndId.put(entityType, agencyIdsByEntityId);
+        Map<String, String> existing = _agencyIdsByEntityClassAndId.putIfAbsent(
+            entityType, agencyIdsByEntityId);
+        if (existing != null)
+          agencyIdsByEntityId = existing;
+      }
+
+      // Entities of a type are normally registered by a single thread, and
+      // only looked up once all of them have been registered
+      synchronized (agencyIdsByEntityId) {
+        if (agencyIdsByEntityId.containsKey(id.getId()))
+          throw new DuplicateEntityException(entityType, id);
+        agencyIdsByEntityId.put(id.getId(), id.getAgencyId());
+      }
+    }
+  }
+
+  /**
+   * Saves the entities to the entity store in batches, once they have been
+   * registered by the {@link EntityHandlerImpl}
+   */
+  private class EntityStoreHandlerImpl implements BatchEntityHandler {
+
+    public void handleEntities(List<Object> entities) {
+
+      List<Object> entitiesToSave = new ArrayList<Object>(entities.size());
+
+      for (Object entity : entities) {
+        if (!(entity instanceof IdentityBean<?>))
+          continue;
+        // Stop times go to the trip stop times handler instead
+        if (entity instanceof StopTime && _stopTimeGrouper != null)
+          continue;
+        // Agencies from a previous load aren't saved again
+        if (entity instanceof Agency && !isRegisteredAgency(entity))
+          continue;
+        entitiesToSave.add(entity);
+      }
+
+      synchronized (_entityStore) {
+        _entityStore.saveEntities(entitiesToSave);
       }
+    }
+
+    private boolean isRegisteredAgency(Object agency) {
+      for (Agency registered : _agencies) {
+        if (registered == agency)
+          return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Collects the stop times of the current trip as they are read, and passes
+   * them to the {@link TripStopTimesHandler} once the next trip starts
+   */
+  private class StopTimeGrouper {
+
+    private final Set<Trip> _completedTrips = new HashSet<Trip>();
+
+    private Trip _trip;
+
+    private List<StopTime> _stopTimes = new ArrayList<StopTime>();
+
+    public void add(StopTime stopTime) {
+      Trip trip = stopTime.getTrip();
+      if (trip != _trip) {
+        flush();
+        if (!_completedTrips.add(trip))
+          throw new IllegalStateException("stop times are not grouped by trip: "
+              + trip.getId());
+        _trip = trip;
+      }
+      _stopTimes.add(stopTime);
+    }
+
+    public void flush() {
+      if (_stopTimes.isEmpty())
+        return;
+      Collections.sort(_stopTimes, new StopTimeComparator());
+      _tripStopTimesHandler.handleStopTimes(_trip, _stopTimes);
+      _stopTimes = new ArrayList<StopTime>();
+    }
+  }
+
+  private class ReadEntitiesTask implements Callable<Void> {
 
-      if (agencyIdsByEntityId.containsKey(id.getId()))
-        throw new DuplicateEntityException(entityType, id);
+    private final Class<?> _entityClass;
 
-      agencyIdsByEntityId.put(id.getId(), id.getAgencyId());
+    private final CsvInputSource _source;
+
+    private final List<Future<Void>> _dependsOn;
+
+    public ReadEntitiesTask(Class<?> entityClass, CsvInputSource source,
+        List<Future<Void>> dependsOn) {
+      _entityClass = entityClass;
+      _source = source;
+      _dependsOn = dependsOn;
+    }
+
+    @Override
+    public Void call() throws Exception {
+
+      // A failed dependency is reported by the reading thread, which waits on
+      // the dependency first
+      for (Future<Void> dependency : _dependsOn)
+        dependency.get();
+
+      _log.info("reading entities: " + _entityClass.getName());
+
+      readEntitiesOfClass(_entityClass, _source);
+      flushEntityStore();
+      return null;
+    }
+  }
+
+  private static class ReaderThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger _threadCount = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "gtfs-reader-"
+          + _threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
     }
   }
 
@@ -261,5 +791,22 @@ public class GtfsReader extends CsvEntityReader {
     public String getTranslatedAgencyId(String agencyId) {
       return GtfsReader.this.getTranslatedAgencyId(agencyId);
     }
+
+    public AgencyAndId getAgencyAndId(String agencyId, String id) {
+      return _agencyAndIdPool.getId(agencyId, id);
+    }
+
+    public EntityReferenceResolver getEntityReferenceResolver(
+        Class<?> entityType) {
+      EntityReferenceResolver resolver = _resolversByEntityType.get(entityType);
+      if (resolver == null) {
+        resolver = new EntityReferenceResolver(entityType, this);
+        EntityReferenceResolver existing = _resolversByEntityType.putIfAbsent(
+            entityType, resolver);
+        if (existing != null)
+          resolver = existing;
+      }
+      return resolver;
+    }
   }
 }
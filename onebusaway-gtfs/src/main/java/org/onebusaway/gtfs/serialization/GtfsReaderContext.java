@@ -1,6 +1,7 @@
 package org.onebusaway.gtfs.serialization;
 
 import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.AgencyAndId;
 
 import java.io.Serializable;
 import java.util.List;
@@ -16,4 +17,16 @@ public interface GtfsReaderContext {
   public Object getEntity(Class<?> entityClass, Serializable id);
 
   public String getAgencyForEntity(Class<?> entityType, String entityId);
+
+  /**
+   * @return a shared, immutable id with the specified values
+   * @see AgencyAndIdPool
+   */
+  public AgencyAndId getAgencyAndId(String agencyId, String id);
+
+  /**
+   * @return the resolver for references to entities of the specified type
+   *         for the current load
+   */
+  public EntityReferenceResolver getEntityReferenceResolver(Class<?> entityType);
 }
@@ -0,0 +1,23 @@
+package org.onebusaway.gtfs.serialization;
+
+import java.util.List;
+
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+/**
+ * Receives the stop times of a feed one trip at a time, instead of having them
+ * saved to the entity store.
+ *
+ * @see GtfsReader#setTripStopTimesHandler(TripStopTimesHandler)
+ */
+public interface TripStopTimesHandler {
+
+  /**
+   * Called once for each trip that has stop times.
+   *
+   * @param trip the trip
+   * @param stopTimes all the stop times of the trip, ordered by stop sequence
+   */
+  public void handleStopTimes(Trip trip, List<StopTime> stopTimes);
+}
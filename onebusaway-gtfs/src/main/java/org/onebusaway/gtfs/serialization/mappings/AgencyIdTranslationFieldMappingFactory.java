@@ -34,7 +34,7 @@ public class AgencyIdTranslationFieldMappingFactory implements FieldMappingFacto
       if (isMissingAndOptional(csvValues))
         return;
 
-      String agencyId = (String) csvValues.get(_csvFieldName);
+      String agencyId = (String) getCsvValue(csvValues);
 
       GtfsReaderContext ctx = (GtfsReaderContext) context.get(GtfsReader.KEY_CONTEXT);
       agencyId = ctx.getTranslatedAgencyId(agencyId);
@@ -1,14 +1,15 @@
 package org.onebusaway.gtfs.serialization.mappings;
 
+import java.util.Collection;
 import java.util.Map;
 
 import org.onebusaway.gtfs.csv.CsvEntityContext;
 import org.onebusaway.gtfs.csv.schema.BeanWrapper;
-import org.onebusaway.gtfs.csv.schema.BeanWrapperFactory;
 import org.onebusaway.gtfs.csv.schema.DefaultFieldMapping;
 import org.onebusaway.gtfs.csv.schema.EntitySchemaFactory;
 import org.onebusaway.gtfs.csv.schema.FieldMapping;
 import org.onebusaway.gtfs.csv.schema.FieldMappingFactory;
+import org.onebusaway.gtfs.csv.schema.PropertyPath;
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.Route;
@@ -42,7 +43,9 @@ import org.onebusaway.gtfs.serialization.GtfsReaderContext;
  * determine the agencyId. So, for example, to set the agencyId for
  * {@link Route#getId()}, we specify a path of "agency.id", which will call
  * {@link Route#getAgency()} and then {@link Agency#getId()} to set the agency
- * id. See also the path "route.agency.id" for {@link Trip}.
+ * id. See also the path "route.agency.id" for {@link Trip}. The path is
+ * compiled into a {@link PropertyPath} for each entity type when the schema is
+ * created.
  * 
  * @author bdferris
  * @see GtfsEntitySchemaFactory
@@ -63,15 +66,29 @@ public class DefaultAgencyIdFieldMappingFactory implements FieldMappingFactory {
       Class<?> entityType, String csvFieldName, String objFieldName,
       Class<?> objFieldType, boolean required) {
 
+    PropertyPath agencyIdPath = null;
+    if (_agencyIdPath != null)
+      agencyIdPath = PropertyPath.compile(entityType, _agencyIdPath);
+
     return new FieldMappingImpl(entityType, csvFieldName, objFieldName,
-        String.class, required);
+        String.class, required, agencyIdPath);
   }
 
-  private class FieldMappingImpl extends DefaultFieldMapping {
+  private static class FieldMappingImpl extends DefaultFieldMapping {
+
+    private final PropertyPath _agencyIdPath;
 
     public FieldMappingImpl(Class<?> entityType, String csvFieldName,
-        String objFieldName, Class<?> objFieldType, boolean required) {
+        String objFieldName, Class<?> objFieldType, boolean required,
+        PropertyPath agencyIdPath) {
       super(entityType, csvFieldName, objFieldName, objFieldType, required);
+      _agencyIdPath = agencyIdPath;
+    }
+
+    @Override
+    public void getObjFieldDependencies(Collection<String> propertyNames) {
+      if (_agencyIdPath != null)
+        propertyNames.add(_agencyIdPath.getPropertyNames().get(0));
     }
 
     @Override
@@ -94,9 +111,11 @@ public class DefaultAgencyIdFieldMappingFactory implements FieldMappingFactory {
 
       String agencyId = resolveAgencyId(context, object);
 
-      String id = (String) csvValues.get(_csvFieldName);
-      AgencyAndId agencyAndId = new AgencyAndId(agencyId, id);
-      object.setPropertyValue(_objFieldName, agencyAndId);
+      String id = getPooledCsvValue(csvValues);
+      GtfsReaderContext ctx = (GtfsReaderContext) context.get(GtfsReader.KEY_CONTEXT);
+      AgencyAndId agencyAndId = ctx != null ? ctx.getAgencyAndId(agencyId, id)
+          : new AgencyAndId(agencyId, id);
+      setObjFieldValue(object, agencyAndId);
     }
 
     private String resolveAgencyId(CsvEntityContext context, BeanWrapper object) {
@@ -106,12 +125,9 @@ public class DefaultAgencyIdFieldMappingFactory implements FieldMappingFactory {
         return ctx.getDefaultAgencyId();
       }
 
-      for (String property : _agencyIdPath.split("\\.")) {
-        Object value = object.getPropertyValue(property);
-        object = BeanWrapperFactory.wrap(value);
-      }
-
-      return object.getWrappedInstance(Object.class).toString();
+      Object bean = object.getWrappedInstance(Object.class);
+      Object agencyId = _agencyIdPath.getValue(bean);
+      return agencyId == null ? null : agencyId.toString();
     }
   }
 }
@@ -8,6 +8,7 @@ import org.onebusaway.gtfs.csv.schema.FieldMapping;
 import org.onebusaway.gtfs.csv.schema.FieldMappingFactory;
 import org.onebusaway.gtfs.model.AgencyAndId;
 import org.onebusaway.gtfs.model.IdentityBean;
+import org.onebusaway.gtfs.serialization.EntityReferenceResolver;
 import org.onebusaway.gtfs.serialization.GtfsReader;
 import org.onebusaway.gtfs.serialization.GtfsReaderContext;
 
@@ -19,6 +20,9 @@ import java.util.Map;
  * versa. Assumes field entity type subclasses {@link IdentityBean} and the
  * target entity can be found with
  * {@link GtfsReaderContext#getEntity(Class, java.io.Serializable)}.
+ * References are resolved through the
+ * {@link GtfsReaderContext#getEntityReferenceResolver(Class)} of the current
+ * load.
  * 
  * @author bdferris
  * @see IdentityBean
@@ -41,12 +45,24 @@ public class EntityFieldMappingFactory implements FieldMappingFactory {
 
     private Class<?> _objFieldType;
 
+    /**
+     * The last reference resolved by the mapping. Files like stop_times.txt
+     * are usually sorted by their references, so consecutive rows mostly
+     * resolve the same id and only need to compare it with this one.
+     */
+    private volatile ResolvedReference _lastReference;
+
     public FieldMappingImpl(Class<?> entityType, String csvFieldName,
         String objFieldName, Class<?> objFieldType, boolean required) {
       super(entityType, csvFieldName, objFieldName, required);
       _objFieldType = objFieldType;
     }
 
+    @Override
+    public Class<?> getReferencedEntityType() {
+      return _objFieldType;
+    }
+
     public void translateFromCSVToObject(CsvEntityContext context,
         Map<String, Object> csvValues, BeanWrapper object) {
 
@@ -54,18 +70,28 @@ public class EntityFieldMappingFactory implements FieldMappingFactory {
         return;
 
       GtfsReaderContext ctx = (GtfsReaderContext) context.get(GtfsReader.KEY_CONTEXT);
-      String entityId = (String) csvValues.get(_csvFieldName);
-      String agencyId = ctx.getAgencyForEntity(_objFieldType, entityId);
-      AgencyAndId id = new AgencyAndId(agencyId, entityId);
-      Object entity = ctx.getEntity(_objFieldType, id);
-      object.setPropertyValue(_objFieldName, entity);
+      EntityReferenceResolver resolver = ctx.getEntityReferenceResolver(_objFieldType);
+
+      ResolvedReference last = _lastReference;
+      Object entity = null;
+
+      if (last != null && last.resolver == resolver
+          && last.rawId.contentEquals(getCsvChars(csvValues))) {
+        entity = last.entity;
+      } else {
+        String entityId = (String) getCsvValue(csvValues);
+        entity = resolver.resolve(entityId);
+        _lastReference = new ResolvedReference(resolver, entityId, entity);
+      }
+
+      setObjFieldValue(object, entity);
     }
 
     @SuppressWarnings("unchecked")
     public void translateFromObjectToCSV(CsvEntityContext context,
         BeanWrapper object, Map<String, Object> csvValues) {
 
-      IdentityBean<AgencyAndId> entity = (IdentityBean<AgencyAndId>) object.getPropertyValue(_objFieldName);
+      IdentityBean<AgencyAndId> entity = (IdentityBean<AgencyAndId>) getObjFieldValue(object);
 
       if (isOptional() && entity == null)
         return;
@@ -76,4 +102,24 @@ public class EntityFieldMappingFactory implements FieldMappingFactory {
     }
   }
 
+  /**
+   * Immutable, so that it can be shared by the threads reading a file in
+   * parallel without locking
+   */
+  private static class ResolvedReference {
+
+    private final EntityReferenceResolver resolver;
+
+    private final String rawId;
+
+    private final Object entity;
+
+    public ResolvedReference(EntityReferenceResolver resolver, String rawId,
+        Object entity) {
+      this.resolver = resolver;
+      this.rawId = rawId;
+      this.entity = entity;
+    }
+  }
+
 }
\ No newline at end of file
@@ -37,11 +37,16 @@ public class RouteAgencyFieldMappingFactory implements FieldMappingFactory {
       super(entityType, csvFieldName, objFieldName, required);
     }
 
+    @Override
+    public Class<?> getReferencedEntityType() {
+      return Agency.class;
+    }
+
     public void translateFromCSVToObject(CsvEntityContext context,
         Map<String, Object> csvValues, BeanWrapper object) {
 
       GtfsReaderContext ctx = (GtfsReaderContext) context.get(GtfsReader.KEY_CONTEXT);
-      String agencyId = (String) csvValues.get(_csvFieldName);
+      String agencyId = (String) getCsvValue(csvValues);
 
       if (isMissing(csvValues))
         agencyId = ctx.getDefaultAgencyId();
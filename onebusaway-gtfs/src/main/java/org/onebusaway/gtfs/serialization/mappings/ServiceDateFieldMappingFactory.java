@@ -30,15 +30,14 @@ public class ServiceDateFieldMappingFactory implements FieldMappingFactory {
       if (isMissingAndOptional(csvValues))
         return;
 
-      Object value = csvValues.get(_csvFieldName);
-      ServiceDate date = ServiceDate.parseString(value.toString());
-      object.setPropertyValue(_objFieldName, date);
+      ServiceDate date = ServiceDate.parseString(getCsvChars(csvValues));
+      setObjFieldValue(object, date);
     }
 
     public void translateFromObjectToCSV(CsvEntityContext context,
         BeanWrapper object, Map<String, Object> csvValues) {
 
-      ServiceDate date = (ServiceDate) object.getPropertyValue(_objFieldName);
+      ServiceDate date = (ServiceDate) getObjFieldValue(object);
       String value = date.getAsString();
       csvValues.put(_csvFieldName, value);
     }
@@ -7,17 +7,10 @@ import org.onebusaway.gtfs.csv.schema.EntitySchemaFactory;
 import org.onebusaway.gtfs.csv.schema.FieldMapping;
 import org.onebusaway.gtfs.csv.schema.FieldMappingFactory;
 
-import java.text.DecimalFormat;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class StopTimeFieldMappingFactory implements FieldMappingFactory {
 
-  private static DecimalFormat _format = new DecimalFormat("00");
-
-  private static Pattern _pattern = Pattern.compile("^(\\d{1,2}):(\\d{2}):(\\d{2})$");
-
   public FieldMapping createFieldMapping(EntitySchemaFactory schemaFactory,
       Class<?> entityType, String csvFieldName, String objFieldName,
       Class<?> objFieldType, boolean required) {
@@ -25,6 +18,82 @@ public class StopTimeFieldMappingFactory implements FieldMappingFactory {
         required);
   }
 
+  /**
+   * Parses a time of the form "h:mm:ss" or "hh:mm:ss", where the hours may be
+   * past 24 for trips that run past midnight, directly from its characters.
+   * 
+   * @param value the time
+   * @return the time in seconds since midnight
+   * @throws InvalidStopTimeException if the value isn't a valid time
+   */
+  public static int getStringAsSeconds(CharSequence value) {
+
+    int length = value.length();
+
+    // The hour has one or two digits, followed by ":mm:ss"
+    if (length != 7 && length != 8)
+      throw new InvalidStopTimeException(value.toString());
+
+    int hourDigits = length - 6;
+    int hours = 0;
+    for (int i = 0; i < hourDigits; i++)
+      hours = hours * 10 + getDigit(value, i);
+
+    if (value.charAt(hourDigits) != ':' || value.charAt(hourDigits + 3) != ':')
+      throw new InvalidStopTimeException(value.toString());
+
+    int minutes = getDigit(value, hourDigits + 1) * 10
+        + getDigit(value, hourDigits + 2);
+    int seconds = getDigit(value, hourDigits + 4) * 10
+        + getDigit(value, hourDigits + 5);
+
+    return seconds + 60 * (minutes + 60 * hours);
+  }
+
+  /**
+   * @param t the time in seconds since midnight
+   * @return the time in "hh:mm:ss" form, with at least two digits for the hour
+   */
+  public static String getSecondsAsString(int t) {
+
+    int hours = t / (60 * 60);
+    t = t - hours * (60 * 60);
+    int minutes = t / 60;
+    t = t - minutes * 60;
+    int seconds = t;
+
+    int hourDigits = 2;
+    for (int h = hours; h >= 100; h /= 10)
+      hourDigits++;
+    char[] chars = new char[hourDigits + 6];
+
+    for (int i = hourDigits - 1; i >= 0; i--) {
+      chars[i] = (char) ('0' + hours % 10);
+      hours /= 10;
+    }
+
+    int i = hourDigits;
+    chars[i++] = ':';
+    chars[i++] = (char) ('0' + minutes / 10);
+    chars[i++] = (char) ('0' + minutes % 10);
+    chars[i++] = ':';
+    chars[i++] = (char) ('0' + seconds / 10);
+    chars[i++] = (char) ('0' + seconds % 10);
+
+    return new String(chars);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static int getDigit(CharSequence value, int index) {
+    int digit = value.charAt(index) - '0';
+    if (digit < 0 || digit > 9)
+      throw new InvalidStopTimeException(value.toString());
+    return digit;
+  }
+
   private static class StopTimeFieldMapping extends AbstractFieldMapping {
 
     public StopTimeFieldMapping(Class<?> entityType, String csvFieldName,
@@ -38,46 +107,22 @@ public class StopTimeFieldMappingFactory implements FieldMappingFactory {
       if (isMissingAndOptional(csvValues))
         return;
 
-      Object value = csvValues.get(_csvFieldName);
-      String stringValue = value.toString();
-
-      Matcher m = _pattern.matcher(stringValue);
-      if (!m.matches())
-        throw new InvalidStopTimeException(stringValue);
-
-      try {
-        int hours = Integer.parseInt(m.group(1));
-        int minutes = Integer.parseInt(m.group(2));
-        int seconds = Integer.parseInt(m.group(3));
-
-        object.setPropertyValue(_objFieldName, seconds + 60
-            * (minutes + 60 * hours));
-
-      } catch (NumberFormatException ex) {
-        throw new InvalidStopTimeException(stringValue);
-      }
-
+      int t = getStringAsSeconds(getCsvChars(csvValues));
+      Object bean = object.getWrappedInstance(Object.class);
+      getObjFieldAccessor(bean).setInt(bean, t);
     }
 
     public void translateFromObjectToCSV(CsvEntityContext context,
         BeanWrapper object, Map<String, Object> csvValues) {
 
-      int t = (Integer) object.getPropertyValue(_objFieldName);
+      int t = (Integer) getObjFieldValue(object);
 
       if (t < 0) {
         csvValues.put(_csvFieldName, "");
         return;
       }
 
-      int hours = t / (60 * 60);
-      t = t - hours * (60 * 60);
-      int minutes = t / 60;
-      t = t - minutes * 60;
-      int seconds = t;
-
-      String value = _format.format(hours) + ":" + _format.format(minutes)
-          + ":" + _format.format(seconds);
-      csvValues.put(_csvFieldName, value);
+      csvValues.put(_csvFieldName, getSecondsAsString(t));
     }
   }
 
@@ -1,6 +1,7 @@
 package org.onebusaway.gtfs.services;
 
 import java.io.Serializable;
+import java.util.Collection;
 
 import org.onebusaway.gtfs.model.IdentityBean;
 
@@ -9,7 +10,27 @@ public interface GenericMutableDao extends GenericDao {
   public void open();
 
   public void saveEntity(Object entity);
+
+  /**
+   * Same as calling {@link #saveEntity(Object)} for each of the entities, in
+   * order, for stores that can save a batch of entities more efficiently
+   */
+  public default void saveEntities(Collection<?> entities) {
+    for (Object entity : entities)
+      saveEntity(entity);
+  }
   
+  /**
+   * A hint that about the specified number of entities of the type are about
+   * to be saved, so that the store can size its storage for them up front
+   * rather than grow it as they arrive. Stores are free to ignore it, which
+   * is what the default implementation does.
+   */
+  public default void setEntityCountHint(Class<?> entityType,
+      int expectedCount) {
+
+  }
+
   public void updateEntity(Object entity);
   
   public void saveOrUpdateEntity(Object entity);
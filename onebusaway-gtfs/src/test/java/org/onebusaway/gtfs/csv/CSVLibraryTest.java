@@ -70,4 +70,22 @@ public class CSVLibraryTest {
     assertEquals("Ford", tokens.get(1));
     assertEquals("E350", tokens.get(2));
   }
+
+  @Test
+  public void testParseEmptyFields() {
+
+    List<String> tokens = CSVLibrary.parse("a,,");
+    assertEquals(3, tokens.size());
+    assertEquals("a", tokens.get(0));
+    assertEquals("", tokens.get(1));
+    assertEquals("", tokens.get(2));
+
+    tokens = CSVLibrary.parse(",");
+    assertEquals(2, tokens.size());
+    assertEquals("", tokens.get(0));
+    assertEquals("", tokens.get(1));
+
+    tokens = CSVLibrary.parse("");
+    assertEquals(0, tokens.size());
+  }
 }
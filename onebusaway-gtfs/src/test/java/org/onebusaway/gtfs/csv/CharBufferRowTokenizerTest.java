@@ -0,0 +1,72 @@
+package org.onebusaway.gtfs.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CharBufferRowTokenizerTest {
+
+  @Test
+  public void testParseMatchesCSVLibrary() {
+
+    String[] lines = {
+        "a,b,c", "a,\"b b\",\"c,c\"", "b\"b", "1997,   Ford   , E350",
+        "1997,Ford,E350,\"Super, luxurious truck\"",
+        "1997,Ford,E350,\"Super \"\"luxurious\"\" truck\"",
+        "\"1997\",\"Ford\",\"E350\"", "a,,", ",", "\"a\"b,c", ""};
+
+    CharBufferTokenizerStrategy strategy = new CharBufferTokenizerStrategy();
+
+    for (String line : lines)
+      assertEquals(line, CSVLibrary.parse(line), strategy.parse(line));
+  }
+
+  @Test
+  public void testReadRows() throws IOException {
+
+    String content = "\uFEFFa,b\r\n\"c\"\"\",d\r\re,\"f,g\"\nh";
+
+    for (int bufferSize : new int[] {1, 3, 1024}) {
+
+      CharBufferRowTokenizer tokenizer = new CharBufferRowTokenizer(
+          new StringReader(content), bufferSize);
+      CsvRowBuffer row = new CsvRowBuffer();
+
+      List<List<String>> rows = new ArrayList<List<String>>();
+      while (tokenizer.readRow(row))
+        rows.add(row.getValues());
+
+      assertEquals(5, rows.size());
+      assertEquals(5, tokenizer.getLineNumber());
+      assertEquals(CSVLibrary.parse("a,b"), rows.get(0));
+      assertEquals(CSVLibrary.parse("c\",d"), rows.get(1));
+      assertEquals(0, rows.get(2).size());
+      assertEquals(CSVLibrary.parse("e,\"f,g\""), rows.get(3));
+      assertEquals(CSVLibrary.parse("h"), rows.get(4));
+    }
+  }
+
+  @Test
+  public void testTrim() throws IOException {
+
+    CharBufferRowTokenizer tokenizer = new CharBufferRowTokenizer(
+        new StringReader(" a , b\t,  ,c\n"));
+    CsvRowBuffer row = new CsvRowBuffer();
+
+    assertTrue(tokenizer.readRow(row));
+    row.trim();
+    assertEquals(4, row.size());
+    assertEquals("a", row.getValue(0));
+    assertEquals("b", row.getValue(1));
+    assertTrue(row.isEmpty(2));
+    assertEquals("c", row.getValue(3));
+    assertFalse(tokenizer.readRow(row));
+  }
+}
@@ -1,10 +1,17 @@
 package org.onebusaway.gtfs.csv;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.junit.Test;
 import org.onebusaway.gtfs.csv.exceptions.CsvEntityIOException;
@@ -38,6 +45,227 @@ public class CsvEntityReaderTest {
     }
   }
 
+  @Test
+  public void testRowWidthMismatch() throws IOException {
+
+    CsvEntityReader reader = new CsvEntityReader();
+
+    AnnotationDrivenEntitySchemaFactory entitySchemaFactory = new AnnotationDrivenEntitySchemaFactory();
+    entitySchemaFactory.addEntityClass(TestBean.class);
+    reader.setEntitySchemaFactory(entitySchemaFactory);
+
+    final List<TestBean> beans = new ArrayList<TestBean>();
+    reader.addEntityHandler(new EntityHandler() {
+      public void handleEntity(Object bean) {
+        beans.add((TestBean) bean);
+      }
+    });
+
+    reader.readEntities(TestBean.class, new StringReader(
+        "name,value\na\nc,d,extra\n"));
+
+    assertEquals(2, beans.size());
+    assertEquals("a", beans.get(0).getName());
+    assertNull(beans.get(0).getValue());
+    assertEquals("c", beans.get(1).getName());
+    assertEquals("d", beans.get(1).getValue());
+  }
+
+  @Test
+  public void testBatchEntityHandler() throws IOException {
+
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setBatchSize(2);
+
+    AnnotationDrivenEntitySchemaFactory entitySchemaFactory = new AnnotationDrivenEntitySchemaFactory();
+    entitySchemaFactory.addEntityClass(TestBean.class);
+    reader.setEntitySchemaFactory(entitySchemaFactory);
+
+    final List<Integer> batchSizes = new ArrayList<Integer>();
+    final List<String> names = new ArrayList<String>();
+    reader.addBatchEntityHandler(new BatchEntityHandler() {
+      public void handleEntities(List<Object> entities) {
+        batchSizes.add(entities.size());
+        for (Object entity : entities)
+          names.add(((TestBean) entity).getName());
+      }
+    });
+
+    reader.readEntities(TestBean.class, new StringReader(
+        "name,value\na,1\nb,2\nc,3\nd,4\ne,5\n"));
+
+    assertEquals(3, batchSizes.size());
+    assertEquals(2, batchSizes.get(0).intValue());
+    assertEquals(2, batchSizes.get(1).intValue());
+    assertEquals(1, batchSizes.get(2).intValue());
+    assertEquals("abcde", join(names));
+
+    // The undelivered batch of a file that fails is dropped
+    names.clear();
+    try {
+      reader.readEntities(TestBean.class, new StringReader(
+          "name,value\nf,6\nh,7\ni,8\n,9\n"));
+      fail();
+    } catch (CsvEntityIOException e) {
+      assertEquals(5, e.getLineNumber());
+    }
+    assertEquals("fh", join(names));
+  }
+
+  @Test
+  public void testReadListener() throws IOException {
+
+    CsvEntityReader reader = new CsvEntityReader();
+
+    AnnotationDrivenEntitySchemaFactory entitySchemaFactory = new AnnotationDrivenEntitySchemaFactory();
+    entitySchemaFactory.addEntityClass(TestBean.class);
+    reader.setEntitySchemaFactory(entitySchemaFactory);
+
+    final List<CsvFileReadStatistics> reads = new ArrayList<CsvFileReadStatistics>();
+    reader.addReadListener(new CsvReadListener() {
+      public void handleFileRead(CsvFileReadStatistics statistics) {
+        reads.add(statistics);
+      }
+    });
+    CsvReadMonitor monitor = new CsvReadMonitor();
+    reader.addReadListener(monitor);
+
+    byte[] content = "name,value\na,1\nb,2\n\nc,3\nd,4\ne,5\n".getBytes("UTF-8");
+
+    reader.readEntities(TestBean.class, new ByteArrayInputStream(content));
+
+    reader.setParallelism(2);
+    reader.setParallelChunkSize(8);
+    reader.readEntities(TestBean.class, new ByteArrayInputStream(content));
+    reader.close();
+
+    assertEquals(2, reads.size());
+    for (CsvFileReadStatistics statistics : reads) {
+      assertEquals(TestBean.class, statistics.getEntityClass());
+      assertEquals("test_beans", statistics.getFilename());
+      assertEquals(5, statistics.getRows());
+      assertEquals(content.length, statistics.getBytes());
+      assertTrue(statistics.getWallNanos() > 0);
+    }
+
+    assertEquals(2, monitor.getFileCount());
+    assertEquals(10, monitor.getRowCount());
+    assertEquals(2 * content.length, monitor.getByteCount());
+    assertEquals(1, monitor.getLastFileReads().length);
+
+    monitor.reset();
+    assertEquals(0, monitor.getRowCount());
+  }
+
+  @Test
+  public void testStreamingTokenizer() throws IOException {
+
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setTokenizerStrategy(new CharBufferTokenizerStrategy());
+    reader.setTrimValues(true);
+
+    AnnotationDrivenEntitySchemaFactory entitySchemaFactory = new AnnotationDrivenEntitySchemaFactory();
+    entitySchemaFactory.addEntityClass(TestBean.class);
+    reader.setEntitySchemaFactory(entitySchemaFactory);
+
+    final List<TestBean> beans = new ArrayList<TestBean>();
+    reader.addEntityHandler(new EntityHandler() {
+      public void handleEntity(Object bean) {
+        beans.add((TestBean) bean);
+      }
+    });
+
+    String content = "name,value\r\n a ,\"b,\"\"c\"\"\"\r\n\r\nd\r\n";
+    reader.readEntities(TestBean.class, new StringReader(content));
+
+    assertEquals(2, beans.size());
+    assertEquals("a", beans.get(0).getName());
+    assertEquals("b,\"c\"", beans.get(0).getValue());
+    assertEquals("d", beans.get(1).getName());
+    assertNull(beans.get(1).getValue());
+
+    reader = new CsvEntityReader();
+    reader.setTokenizerStrategy(new CharBufferTokenizerStrategy());
+    reader.setEntitySchemaFactory(entitySchemaFactory);
+
+    StringReader source = new StringReader("name,value\na,b\n,d\n");
+    try {
+      reader.readEntities(TestBean.class, source);
+      fail();
+    } catch (CsvEntityIOException e) {
+      assertEquals(3, e.getLineNumber());
+    }
+  }
+
+  @Test
+  public void testParallel() throws IOException {
+
+    StringBuilder content = new StringBuilder("name,value\n");
+    for (int i = 0; i < 1000; i++)
+      content.append("n").append(i).append(",\"v,").append(i).append("\"\r\n");
+    byte[] bytes = content.toString().getBytes("UTF-8");
+
+    for (boolean preserveOrder : new boolean[] {true, false}) {
+
+      CsvEntityReader reader = new CsvEntityReader();
+      reader.setParallelism(4);
+      reader.setParallelChunkSize(100);
+      reader.setPreserveOrder(preserveOrder);
+
+      AnnotationDrivenEntitySchemaFactory entitySchemaFactory = new AnnotationDrivenEntitySchemaFactory();
+      entitySchemaFactory.addEntityClass(TestBean.class);
+      reader.setEntitySchemaFactory(entitySchemaFactory);
+
+      final List<TestBean> beans = new ArrayList<TestBean>();
+      reader.addEntityHandler(new EntityHandler() {
+        public void handleEntity(Object bean) {
+          beans.add((TestBean) bean);
+        }
+      });
+
+      reader.readEntities(TestBean.class, new ByteArrayInputStream(bytes));
+      reader.close();
+
+      assertEquals(1000, beans.size());
+      Set<String> names = new HashSet<String>();
+      for (int i = 0; i < beans.size(); i++) {
+        TestBean bean = beans.get(i);
+        if (preserveOrder)
+          assertEquals("n" + i, bean.getName());
+        assertEquals("v," + bean.getName().substring(1), bean.getValue());
+        names.add(bean.getName());
+      }
+      assertEquals(1000, names.size());
+    }
+
+    CsvEntityReader reader = new CsvEntityReader();
+    reader.setParallelism(4);
+    reader.setParallelChunkSize(100);
+    reader.setPreserveOrder(false);
+
+    AnnotationDrivenEntitySchemaFactory entitySchemaFactory = new AnnotationDrivenEntitySchemaFactory();
+    entitySchemaFactory.addEntityClass(TestBean.class);
+    reader.setEntitySchemaFactory(entitySchemaFactory);
+
+    content.append(",missing\n");
+    try {
+      reader.readEntities(TestBean.class, new ByteArrayInputStream(
+          content.toString().getBytes("UTF-8")));
+      fail();
+    } catch (CsvEntityIOException e) {
+      assertEquals(1002, e.getLineNumber());
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static String join(List<String> values) {
+    StringBuilder b = new StringBuilder();
+    for (String value : values)
+      b.append(value);
+    return b.toString();
+  }
+
   @CsvFields(filename = "test_beans")
   public static class TestBean {
 
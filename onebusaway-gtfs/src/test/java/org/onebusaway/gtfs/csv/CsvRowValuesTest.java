@@ -0,0 +1,29 @@
+package org.onebusaway.gtfs.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CsvRowValuesTest {
+
+  @Test
+  public void testUnknownHeaderNamesAreNotRegistered() {
+
+    int key = CsvFieldKeys.getKey("CsvRowValuesTest.known");
+
+    CsvRowValues values = new CsvRowValues(Arrays.asList(
+        "CsvRowValuesTest.unknown", "CsvRowValuesTest.known"));
+    values.setValues(Arrays.asList("a", "b"));
+
+    assertEquals(-1, CsvFieldKeys.findKey("CsvRowValuesTest.unknown"));
+    assertEquals(key, CsvFieldKeys.findKey("CsvRowValuesTest.known"));
+
+    assertEquals("b", values.getValueForKey(key));
+    assertEquals("a", values.get("CsvRowValuesTest.unknown"));
+    assertEquals("b", values.get("CsvRowValuesTest.known"));
+    assertNull(values.get("CsvRowValuesTest.missing"));
+  }
+}
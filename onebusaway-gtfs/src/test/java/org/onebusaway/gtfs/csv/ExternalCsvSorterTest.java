@@ -0,0 +1,70 @@
+package org.onebusaway.gtfs.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ExternalCsvSorterTest {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  @Test
+  public void testIsGrouped() throws IOException {
+
+    ExternalCsvSorter sorter = new ExternalCsvSorter();
+
+    assertTrue(sorter.isGrouped(input("id,v\nb,1\nb,2\na,3\n\nc,4"), "id"));
+    assertFalse(sorter.isGrouped(input("id,v\nb,1\na,2\nb,3"), "id"));
+    assertTrue(sorter.isGrouped(input("id,v\nb,1\na,2\nb,3"), "v"));
+    assertTrue(sorter.isGrouped(input("id,v\nb,1\na,2\nb,3"), "missing"));
+    assertFalse(sorter.isGrouped(input("v, id \n1,b\n2,a\n3,b"), "id"));
+  }
+
+  @Test
+  public void testSort() throws IOException {
+
+    ExternalCsvSorter sorter = new ExternalCsvSorter();
+    sorter.setMaxRowsInMemory(2);
+
+    String content = "v,id\n1,c\n2,\" b\"\n3,a\n\n4,\"b,b\"\n5,c\n6,a\n7,b";
+    File sorted = sorter.sort(input(content), "id");
+
+    try {
+      List<String> lines = Files.readAllLines(sorted.toPath(), UTF8);
+      List<String> expected = Arrays.asList("v,id", "3,a", "6,a", "2, b",
+          "7,b", "4,\"b,b\"", "1,c", "5,c");
+      assertEquals(expected, lines);
+    } finally {
+      sorted.delete();
+    }
+  }
+
+  @Test
+  public void testSortPaddedHeader() throws IOException {
+
+    ExternalCsvSorter sorter = new ExternalCsvSorter();
+    File sorted = sorter.sort(input("v, id \n1,b\n2,a\n3,b"), "id");
+
+    try {
+      List<String> lines = Files.readAllLines(sorted.toPath(), UTF8);
+      assertEquals(Arrays.asList("v, id ", "2,a", "1,b", "3,b"), lines);
+    } finally {
+      sorted.delete();
+    }
+  }
+
+  private InputStream input(String content) {
+    return new ByteArrayInputStream(content.getBytes(UTF8));
+  }
+}
@@ -0,0 +1,75 @@
+package org.onebusaway.gtfs.csv;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+public class PrefetchingZipFileCsvInputSourceTest {
+
+  @Test
+  public void testPrefetch() throws IOException {
+
+    String a = createContent("a", 200000);
+    String b = createContent("b", 200000);
+    String c = createContent("c", 1000);
+
+    File file = File.createTempFile("PrefetchingZipFileCsvInputSourceTest",
+        ".zip");
+    file.deleteOnExit();
+
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+    writeEntry(out, "a.txt", a);
+    writeEntry(out, "b.txt", b);
+    writeEntry(out, "c.txt", c);
+    out.close();
+
+    PrefetchingZipFileCsvInputSource source = new PrefetchingZipFileCsvInputSource(
+        new ZipFile(file));
+    source.setMaxBufferedBytesPerEntry(64 * 1024);
+    source.prefetch(Arrays.asList("a.txt", "missing.txt", "b.txt", "c.txt"));
+
+    assertEquals(a, readResource(source, "a.txt"));
+    // Skips b.txt, which must not leave its inflater blocked
+    assertEquals(c, readResource(source, "c.txt"));
+    // Not prefetched any more, so read directly
+    assertEquals(b, readResource(source, "b.txt"));
+
+    source.close();
+  }
+
+  private String createContent(String prefix, int lines) {
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < lines; i++)
+      b.append(prefix).append(',').append(i).append('\n');
+    return b.toString();
+  }
+
+  private void writeEntry(ZipOutputStream out, String name, String content)
+      throws IOException {
+    out.putNextEntry(new ZipEntry(name));
+    out.write(content.getBytes("UTF-8"));
+    out.closeEntry();
+  }
+
+  private String readResource(CsvInputSource source, String name)
+      throws IOException {
+    InputStream in = source.getResource(name);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int n;
+    while ((n = in.read(buffer)) != -1)
+      out.write(buffer, 0, n);
+    in.close();
+    return new String(out.toByteArray(), "UTF-8");
+  }
+}
@@ -0,0 +1,57 @@
+package org.onebusaway.gtfs.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class StringPoolTest {
+
+  @Test
+  public void testGet() {
+
+    StringPool pool = new StringPool();
+    char[] buffer = "abc,abc,ab".toCharArray();
+
+    String a = pool.get(buffer, 0, 3);
+    assertEquals("abc", a);
+    assertSame(a, pool.get(buffer, 4, 3));
+    assertEquals("ab", pool.get(buffer, 8, 2));
+    assertSame(a, pool.intern(new String("abc")));
+    assertEquals(2, pool.size());
+
+    assertSame("", pool.get(buffer, 0, 0));
+  }
+
+  @Test
+  public void testManyValues() {
+
+    StringPool pool = new StringPool();
+    for (int i = 0; i < 10000; i++)
+      pool.intern(Integer.toString(i));
+    assertEquals(10000, pool.size());
+
+    for (int i = 0; i < 10000; i++) {
+      char[] buffer = Integer.toString(i).toCharArray();
+      assertEquals(Integer.toString(i), pool.get(buffer, 0, buffer.length));
+    }
+    assertEquals(10000, pool.size());
+  }
+
+  @Test
+  public void testLimits() {
+
+    StringPool pool = new StringPool();
+    pool.setMaxLength(2);
+    char[] buffer = "abc".toCharArray();
+    assertNotSame(pool.get(buffer, 0, 3), pool.get(buffer, 0, 3));
+    assertSame(pool.get(buffer, 0, 2), pool.get(buffer, 0, 2));
+
+    pool = new StringPool();
+    pool.setMaxSize(16);
+    for (int i = 0; i < 1000; i++)
+      pool.intern(Integer.toString(i));
+    assertEquals(true, pool.size() <= 16);
+  }
+}
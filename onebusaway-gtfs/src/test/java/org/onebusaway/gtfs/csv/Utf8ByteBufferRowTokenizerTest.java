@@ -0,0 +1,85 @@
+package org.onebusaway.gtfs.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class Utf8ByteBufferRowTokenizerTest {
+
+  @Test
+  public void testReadRows() throws Exception {
+
+    String content = "\uFEFFa,\"b,\"\"c\"\"\"\r\nTuéjar-Casinos,€\r\rlast";
+    ByteBuffer buffer = ByteBuffer.wrap(content.getBytes("UTF-8"));
+
+    Utf8ByteBufferRowTokenizer tokenizer = new Utf8ByteBufferRowTokenizer(
+        buffer);
+    CsvRowBuffer row = new CsvRowBuffer();
+
+    assertTrue(tokenizer.readRow(row));
+    assertEquals(CSVLibrary.parse("a,\"b,\"\"c\"\"\""), row.getValues());
+
+    assertTrue(tokenizer.readRow(row));
+    assertEquals(2, row.size());
+    assertEquals("Tuéjar-Casinos", row.getValue(0));
+    assertEquals("€", row.getValue(1));
+
+    assertTrue(tokenizer.readRow(row));
+    assertEquals(0, row.size());
+
+    assertTrue(tokenizer.readRow(row));
+    assertEquals("last", row.getValue(0));
+
+    assertFalse(tokenizer.readRow(row));
+    assertEquals(4, tokenizer.getLineNumber());
+  }
+
+  @Test
+  public void testMalformedInput() throws Exception {
+
+    byte[] bytes = {'a', ',', (byte) 0xFF, 'b', '\n'};
+    Utf8ByteBufferRowTokenizer tokenizer = new Utf8ByteBufferRowTokenizer(
+        ByteBuffer.wrap(bytes));
+    CsvRowBuffer row = new CsvRowBuffer();
+
+    assertTrue(tokenizer.readRow(row));
+    assertEquals("a", row.getValue(0));
+    assertEquals("\uFFFDb", row.getValue(1));
+    assertFalse(tokenizer.readRow(row));
+  }
+
+  @Test
+  public void testWordBoundaries() throws Exception {
+
+    // Terminators, quotes and multi-byte characters at every offset within
+    // and across eight byte words
+    StringBuilder b = new StringBuilder();
+    String[] specials = {"\"x,\"\"y\"", "\u00e9", "\r\n", "\r", ",,"};
+    for (int i = 0; i < 40; i++) {
+      for (int j = 0; j < i % 11; j++)
+        b.append((char) ('a' + j));
+      b.append(specials[i % specials.length]);
+      b.append(i % 3 == 0 ? "\n" : ",z\n");
+    }
+    String content = b.toString();
+
+    Utf8ByteBufferRowTokenizer tokenizer = new Utf8ByteBufferRowTokenizer(
+        ByteBuffer.wrap(content.getBytes("UTF-8")));
+    CharBufferRowTokenizer expected = new CharBufferRowTokenizer(
+        new StringReader(content));
+    CsvRowBuffer row = new CsvRowBuffer();
+    CsvRowBuffer expectedRow = new CsvRowBuffer();
+
+    while (expected.readRow(expectedRow)) {
+      assertTrue(tokenizer.readRow(row));
+      assertEquals(expectedRow.getValues(), row.getValues());
+    }
+    assertFalse(tokenizer.readRow(row));
+    assertEquals(expected.getLineNumber(), tokenizer.getLineNumber());
+  }
+}
@@ -1,8 +1,13 @@
 package org.onebusaway.gtfs.csv.schema;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
+import org.onebusaway.gtfs.csv.exceptions.MethodInvocationException;
+import org.onebusaway.gtfs.csv.exceptions.NoSuchPropertyException;
 
 public class BeanWrapperFactoryTest {
 
@@ -34,6 +39,64 @@ public class BeanWrapperFactoryTest {
     assertEquals("f", wrapper.getPropertyValue("b"));
   }
 
+  @Test
+  public void testPropertyAccessor() {
+
+    PropertyAccessor count = BeanWrapperFactory.getPropertyAccessor(
+        Counter.class, "count");
+    assertEquals(int.class, count.getPropertyType());
+    assertTrue(count.isReadable());
+    assertTrue(count.isWritable());
+
+    Counter counter = new Counter();
+    count.setValue(counter, 3);
+    assertEquals(3, counter.getCount());
+    assertEquals(3, count.getValue(counter));
+
+    PropertyAccessor name = BeanWrapperFactory.getPropertyAccessor(
+        Counter.class, "name");
+    assertFalse(name.isWritable());
+    assertEquals("counter", name.getValue(counter));
+
+    try {
+      name.setValue(counter, "other");
+      fail();
+    } catch (NoSuchPropertyException ex) {
+
+    }
+
+    try {
+      count.setValue(counter, "not a number");
+      fail();
+    } catch (MethodInvocationException ex) {
+
+    }
+
+    try {
+      BeanWrapperFactory.getPropertyAccessor(Counter.class, "missing");
+      fail();
+    } catch (NoSuchPropertyException ex) {
+
+    }
+  }
+
+  public static class Counter {
+
+    private int count;
+
+    public int getCount() {
+      return count;
+    }
+
+    public void setCount(int count) {
+      this.count = count;
+    }
+
+    public String getName() {
+      return "counter";
+    }
+  }
+
   private static class AB {
 
     private String a;
@@ -0,0 +1,63 @@
+package org.onebusaway.gtfs.csv.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PrimitiveParserTest {
+
+  @Test
+  public void testParseInt() {
+    assertEquals(0, PrimitiveParser.parseInt("0", -1));
+    assertEquals(42, PrimitiveParser.parseInt("42", -1));
+    assertEquals(-42, PrimitiveParser.parseInt("-42", -1));
+    assertEquals(42, PrimitiveParser.parseInt("+42", -1));
+    assertEquals(Integer.MAX_VALUE, PrimitiveParser.parseInt("2147483647", -1));
+    assertEquals(Integer.MIN_VALUE,
+        PrimitiveParser.parseInt("-2147483648", -1));
+    assertEquals(-1, PrimitiveParser.parseInt("2147483648", -1));
+    assertEquals(-1, PrimitiveParser.parseInt("4.5", -1));
+    assertEquals(-1, PrimitiveParser.parseInt("-", -1));
+    assertEquals(-1, PrimitiveParser.parseInt("", -1));
+  }
+
+  @Test
+  public void testParseDouble() {
+
+    assertEquals(47.653435, PrimitiveParser.parseDouble("47.653435", -1), 0.0);
+    assertEquals(-122.305641,
+        PrimitiveParser.parseDouble("-122.305641", -1), 0.0);
+    assertEquals(5.0, PrimitiveParser.parseDouble("5.", -1), 0.0);
+    assertEquals(0.5, PrimitiveParser.parseDouble(".5", -1), 0.0);
+    assertEquals(1.5e10, PrimitiveParser.parseDouble("1.5e10", -1), 0.0);
+    assertEquals(-1, PrimitiveParser.parseDouble(".", -1), 0.0);
+    assertEquals(-1, PrimitiveParser.parseDouble("1.2.3", -1), 0.0);
+    assertEquals(-1, PrimitiveParser.parseDouble("abc", -1), 0.0);
+
+    // Always the same as the JDK, down to the last bit
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      String value = Double.toString((random.nextDouble() - 0.5) * 360);
+      if (random.nextBoolean())
+        value = value.substring(0, Math.min(value.length(),
+            3 + random.nextInt(15)));
+      assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)),
+          Double.doubleToLongBits(PrimitiveParser.parseDouble(value, -1)));
+    }
+  }
+
+  @Test
+  public void testParseBoolean() {
+    assertTrue(PrimitiveParser.parseBoolean("1", false));
+    assertTrue(PrimitiveParser.parseBoolean("TRUE", false));
+    assertTrue(PrimitiveParser.parseBoolean("yes", false));
+    assertFalse(PrimitiveParser.parseBoolean("0", true));
+    assertFalse(PrimitiveParser.parseBoolean("off", true));
+    assertTrue(PrimitiveParser.parseBoolean("2", true));
+    assertFalse(PrimitiveParser.parseBoolean("maybe", false));
+  }
+}
@@ -0,0 +1,57 @@
+package org.onebusaway.gtfs.csv.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.onebusaway.gtfs.csv.exceptions.NoSuchPropertyException;
+import org.onebusaway.gtfs.model.Agency;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Trip;
+
+public class PropertyPathTest {
+
+  @Test
+  public void testGetValue() {
+
+    Agency agency = new Agency();
+    agency.setId("agency");
+    Route route = new Route();
+    route.setAgency(agency);
+    Trip trip = new Trip();
+    trip.setRoute(route);
+
+    PropertyPath path = PropertyPath.compile(Trip.class, "route.agency.id");
+    assertEquals(Arrays.asList("route", "agency", "id"),
+        path.getPropertyNames());
+    assertEquals("agency", path.getValue(trip));
+
+    // Intermediate nulls short-circuit
+    route.setAgency(null);
+    assertNull(path.getValue(trip));
+
+    // Untyped paths resolve against the runtime class
+    route.setAgency(agency);
+    assertEquals("agency", PropertyPath.compile("route.agency.id").getValue(
+        trip));
+  }
+
+  @Test
+  public void testInvalidPath() {
+    try {
+      PropertyPath.compile(Trip.class, "route.noSuchProperty");
+      fail();
+    } catch (NoSuchPropertyException ex) {
+
+    }
+    try {
+      PropertyPath.compile("route..id");
+      fail();
+    } catch (IllegalArgumentException ex) {
+
+    }
+  }
+}
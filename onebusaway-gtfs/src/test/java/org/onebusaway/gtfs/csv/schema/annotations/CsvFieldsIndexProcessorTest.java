@@ -0,0 +1,212 @@
+package org.onebusaway.gtfs.csv.schema.annotations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onebusaway.gtfs.csv.schema.AnnotationDrivenEntitySchemaFactory;
+import org.onebusaway.gtfs.csv.schema.beans.CsvEntityMappingBean;
+
+public class CsvFieldsIndexProcessorTest {
+
+  private File _tmpDirectory;
+
+  @Before
+  public void setup() throws IOException {
+    _tmpDirectory = File.createTempFile("CsvFieldsIndexProcessorTest-", "-tmp");
+    if (_tmpDirectory.exists())
+      deleteFileRecursively(_tmpDirectory);
+    _tmpDirectory.mkdirs();
+  }
+
+  @After
+  public void teardown() {
+    deleteFileRecursively(_tmpDirectory);
+  }
+
+  @Test
+  public void testIndex() throws Exception {
+
+    File sourceDirectory = new File(_tmpDirectory, "src");
+    File classesDirectory = new File(_tmpDirectory, "classes");
+    classesDirectory.mkdirs();
+
+    List<String> args = new ArrayList<String>();
+    args.addAll(Arrays.asList("-processor",
+        CsvFieldsIndexProcessor.class.getName(), "-classpath",
+        System.getProperty("java.class.path"), "-d",
+        classesDirectory.getAbsolutePath()));
+    args.add(write(sourceDirectory, "example/index/IndexedBean.java",
+        "package example.index;\n"
+            + "@org.onebusaway.gtfs.csv.schema.annotations.CsvFields(filename = \"indexed.txt\")\n"
+            + "public class IndexedBean {\n" + "  public static class Inner {}\n"
+            + "}\n"));
+    args.add(write(sourceDirectory, "example/index/sub/NestedBean.java",
+        "package example.index.sub;\n" + "public class NestedBean {\n"
+            + "  @org.onebusaway.gtfs.csv.schema.annotations.CsvFields(filename = \"nested.txt\")\n"
+            + "  public static class Inner {}\n" + "}\n"));
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assertNotNull(compiler);
+    assertEquals(0, compiler.run(null, null, null,
+        args.toArray(new String[args.size()])));
+
+    File index = new File(classesDirectory,
+        CsvFieldsIndexProcessor.INDEX_RESOURCE);
+    assertTrue(index.exists());
+    assertEquals("example.index.IndexedBean\n"
+        + "example.index.sub.NestedBean$Inner\n", read(index));
+
+    AnnotationDrivenEntitySchemaFactory factory = new AnnotationDrivenEntitySchemaFactory();
+    factory.setClassLoader(new URLClassLoader(
+        new URL[] {classesDirectory.toURI().toURL()},
+        getClass().getClassLoader()));
+    factory.addPackageToScan("example.index");
+
+    Set<String> classNames = new HashSet<String>();
+    for (CsvEntityMappingBean mapping : factory.getEntityMappings())
+      classNames.add(mapping.getType().getName());
+    assertEquals(new HashSet<String>(Arrays.asList(
+        "example.index.IndexedBean", "example.index.sub.NestedBean$Inner")),
+        classNames);
+  }
+
+  @Test
+  public void testIncrementalIndexDropsMissingClasses() throws Exception {
+
+    File sourceDirectory = new File(_tmpDirectory, "src");
+    File classesDirectory = new File(_tmpDirectory, "classes");
+    classesDirectory.mkdirs();
+
+    String kept = write(sourceDirectory, "example/stale/KeptBean.java",
+        "package example.stale;\n"
+            + "@org.onebusaway.gtfs.csv.schema.annotations.CsvFields(filename = \"kept.txt\")\n"
+            + "public class KeptBean {}\n");
+    String removed = write(sourceDirectory, "example/stale/RemovedBean.java",
+        "package example.stale;\n"
+            + "@org.onebusaway.gtfs.csv.schema.annotations.CsvFields(filename = \"removed.txt\")\n"
+            + "public class RemovedBean {}\n");
+    assertEquals(0, compile(classesDirectory, true, kept, removed));
+
+    // An incremental compile of a new class, after the other was deleted
+    new File(removed).delete();
+    new File(classesDirectory, "example/stale/RemovedBean.class").delete();
+    String added = write(sourceDirectory, "example/stale/AddedBean.java",
+        "package example.stale;\n"
+            + "@org.onebusaway.gtfs.csv.schema.annotations.CsvFields(filename = \"added.txt\")\n"
+            + "public class AddedBean {}\n");
+    assertEquals(0, compile(classesDirectory, true, added));
+
+    assertEquals("example.stale.AddedBean\n" + "example.stale.KeptBean\n",
+        read(new File(classesDirectory, CsvFieldsIndexProcessor.INDEX_RESOURCE)));
+  }
+
+  @Test
+  public void testStaleIndexFallsBackToScanning() throws Exception {
+
+    File sourceDirectory = new File(_tmpDirectory, "src");
+    File classesDirectory = new File(_tmpDirectory, "classes");
+    classesDirectory.mkdirs();
+
+    // Compiled without the processor, with an index of a deleted class
+    assertEquals(0, compile(classesDirectory, false, write(sourceDirectory,
+        "example/scanned/ScannedBean.java", "package example.scanned;\n"
+            + "@org.onebusaway.gtfs.csv.schema.annotations.CsvFields(filename = \"scanned.txt\")\n"
+            + "public class ScannedBean {}\n")));
+    write(classesDirectory, CsvFieldsIndexProcessor.INDEX_RESOURCE,
+        "example.scanned.DeletedBean\n");
+
+    AnnotationDrivenEntitySchemaFactory factory = new AnnotationDrivenEntitySchemaFactory();
+    factory.setClassLoader(new URLClassLoader(
+        new URL[] {classesDirectory.toURI().toURL()},
+        getClass().getClassLoader()));
+    factory.addPackageToScan("example.scanned");
+
+    List<String> classNames = new ArrayList<String>();
+    for (CsvEntityMappingBean mapping : factory.getEntityMappings())
+      classNames.add(mapping.getType().getName());
+    assertEquals(Arrays.asList("example.scanned.ScannedBean"), classNames);
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private int compile(File classesDirectory, boolean index, String... sources) {
+    List<String> args = new ArrayList<String>();
+    if (index)
+      args.addAll(Arrays.asList("-processor",
+          CsvFieldsIndexProcessor.class.getName()));
+    else
+      args.add("-proc:none");
+    args.addAll(Arrays.asList("-classpath", System.getProperty("java.class.path")
+        + File.pathSeparator + classesDirectory.getAbsolutePath(), "-d",
+        classesDirectory.getAbsolutePath()));
+    args.addAll(Arrays.asList(sources));
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assertNotNull(compiler);
+    return compiler.run(null, null, null, args.toArray(new String[args.size()]));
+  }
+
+  private String write(File directory, String path, String content)
+      throws IOException {
+    File file = new File(directory, path);
+    file.getParentFile().mkdirs();
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+    return file.getAbsolutePath();
+  }
+
+  private String read(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[(int) file.length()];
+      int offset = 0;
+      while (offset < buffer.length)
+        offset += in.read(buffer, offset, buffer.length - offset);
+      return new String(buffer, "UTF-8");
+    } finally {
+      in.close();
+    }
+  }
+
+  private void deleteFileRecursively(File file) {
+
+    if (!file.exists())
+      return;
+
+    if (file.isDirectory()) {
+      File[] files = file.listFiles();
+      if (files != null) {
+        for (File child : files)
+          deleteFileRecursively(child);
+      }
+    }
+
+    file.delete();
+  }
+}
@@ -4,10 +4,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import org.junit.Test;
 import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.ShapePoint;
 import org.onebusaway.gtfs.model.Stop;
 
 public class GenericDaoImplTest {
@@ -47,4 +50,30 @@ public class GenericDaoImplTest {
     assertEquals(1, entities.size());
     assertSame(stopB, entities.iterator().next());
   }
+
+  @Test
+  public void testSaveEntitiesWithCountHint() {
+
+    GenericDaoImpl impl = new GenericDaoImpl();
+    impl.setEntityCountHint(Stop.class, 1000);
+    impl.setEntityCountHint(ShapePoint.class, 1000);
+
+    List<Object> entities = new ArrayList<Object>();
+    for (int i = 0; i < 3; i++) {
+      Stop stop = new Stop();
+      stop.setId(new AgencyAndId("1", "stop" + i));
+      entities.add(stop);
+      entities.add(new ShapePoint());
+    }
+
+    impl.saveEntities(entities);
+
+    assertEquals(3, impl.getAllEntitiesForType(Stop.class).size());
+    assertSame(entities.get(2), impl.getEntityForId(Stop.class,
+        new AgencyAndId("1", "stop1")));
+
+    // Ids are still generated for entities with integer ids
+    assertEquals(3, impl.getAllEntitiesForType(ShapePoint.class).size());
+    assertEquals(3, ((ShapePoint) entities.get(5)).getId().intValue());
+  }
 }
@@ -1,7 +1,10 @@
 package org.onebusaway.gtfs.model.calendar;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.onebusaway.gtfs.DateSupport.date;
 
 import java.util.Calendar;
@@ -107,4 +110,35 @@ public class ServiceDateTest {
     String value = serviceDate.getAsString();
     assertEquals("20100201", value);
   }
+
+  @Test
+  public void testStringErrors() {
+    String[] invalid = {"", "2010021", "201002011", "2010-2-1", "2010020a"};
+    for (String value : invalid) {
+      try {
+        ServiceDate.parseString(value);
+        fail(value);
+      } catch (IllegalStateException ex) {
+        assertEquals("error parsing date: " + value, ex.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void testValueOf() {
+
+    ServiceDate serviceDate = ServiceDate.valueOf(2010, 2, 1);
+    assertEquals(new ServiceDate(2010, 2, 1), serviceDate);
+    assertSame(serviceDate, ServiceDate.valueOf(20100201));
+    assertSame(serviceDate, ServiceDate.parseString("20100201"));
+    assertEquals(20100201, serviceDate.getAsInt());
+
+    // Outside the cached range
+    ServiceDate early = ServiceDate.valueOf(1900, 1, 1);
+    assertEquals(new ServiceDate(1900, 1, 1), early);
+    assertNotSame(early, ServiceDate.valueOf(1900, 1, 1));
+    assertEquals("19000101", early.getAsString());
+
+    assertEquals("00120304", new ServiceDate(12, 3, 4).getAsString());
+  }
 }
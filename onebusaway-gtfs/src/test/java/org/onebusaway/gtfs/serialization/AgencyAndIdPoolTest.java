@@ -0,0 +1,60 @@
+package org.onebusaway.gtfs.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.ImmutableAgencyAndId;
+
+public class AgencyAndIdPoolTest {
+
+  @Test
+  public void testPool() {
+
+    AgencyAndIdPool pool = new AgencyAndIdPool();
+
+    AgencyAndId id = pool.getId("agency", "1");
+    assertTrue(id instanceof ImmutableAgencyAndId);
+    assertSame(id, pool.getId("agency", new String("1")));
+    assertFalse(id == pool.getId("other", "1"));
+    assertEquals(2, pool.size());
+
+    // Interchangeable with mutable ids
+    AgencyAndId mutable = new AgencyAndId("agency", "1");
+    assertEquals(mutable, id);
+    assertEquals(id, mutable);
+    assertEquals(mutable.hashCode(), id.hashCode());
+
+    try {
+      id.setId("2");
+      fail();
+    } catch (UnsupportedOperationException ex) {
+
+    }
+
+    pool.clear();
+    assertEquals(0, pool.size());
+  }
+
+  @Test
+  public void testHashCode() {
+
+    // With xor, every id equal to its agency id hashed to zero
+    assertFalse(new AgencyAndId("1", "1").hashCode() == new AgencyAndId("2",
+        "2").hashCode());
+
+    // Sequential numeric ids should spread over the low bits used by hash
+    // tables
+    Set<Integer> buckets = new HashSet<Integer>();
+    for (int i = 0; i < 1000; i++)
+      buckets.add(new AgencyAndId("1", Integer.toString(i)).hashCode() & 1023);
+    assertTrue(buckets.size() > 500);
+  }
+}
@@ -0,0 +1,145 @@
+package org.onebusaway.gtfs.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.model.calendar.ServiceDate;
+import org.onebusaway.gtfs.serialization.GtfsIncrementalReloader.FileDelta;
+
+public class GtfsIncrementalReloaderTest {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private File _tmpDirectory;
+
+  @Before
+  public void setup() throws IOException {
+    _tmpDirectory = File.createTempFile("GtfsIncrementalReloaderTest-", "-tmp");
+    if (_tmpDirectory.exists())
+      deleteFileRecursively(_tmpDirectory);
+    _tmpDirectory.mkdirs();
+  }
+
+  @After
+  public void teardown() {
+    deleteFileRecursively(_tmpDirectory);
+  }
+
+  @Test
+  public void testReload() throws IOException {
+
+    File source = GtfsTestData.getTestAgencyGtfs();
+    File path = _tmpDirectory;
+    copyFeed(source, path);
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    GtfsIncrementalReloader reloader = new GtfsIncrementalReloader(dao);
+
+    List<FileDelta> deltas = reloader.load(path);
+    assertEquals(source.listFiles().length, deltas.size());
+    assertEquals(7, dao.getAllRoutes().size());
+    assertEquals(43, dao.getAllStopTimes().size());
+
+    // Nothing changed
+    deltas = reloader.load(path);
+    assertEquals(0, deltas.size());
+    assertEquals(7, dao.getAllRoutes().size());
+    assertEquals(43, dao.getAllStopTimes().size());
+
+    AgencyAndId routeId = new AgencyAndId("agency", "1");
+    Route route = dao.getRouteForId(routeId);
+    Trip trip = dao.getTripForId(new AgencyAndId("agency", "1.1"));
+
+    // Rename a route and move the last stop time of a trip
+    replaceLine(path, "routes.txt", "1,1,1,3", "1,1,Renamed,3");
+    replaceLine(path, "stop_times.txt", "1.1,00:20:00,00:20:00,C,3,,,",
+        "1.1,00:25:00,00:25:00,C,3,,,");
+
+    deltas = reloader.load(path);
+    assertEquals(2, deltas.size());
+
+    FileDelta routesDelta = deltas.get(0);
+    assertEquals(Route.class, routesDelta.getEntityClass());
+    assertEquals(0, routesDelta.getAdded());
+    assertEquals(0, routesDelta.getRemoved());
+    assertEquals(1, routesDelta.getUpdated());
+
+    FileDelta stopTimesDelta = deltas.get(1);
+    assertEquals(StopTime.class, stopTimesDelta.getEntityClass());
+    assertEquals(1, stopTimesDelta.getAdded());
+    assertEquals(1, stopTimesDelta.getRemoved());
+
+    // The route is updated in place, so trips still refer to it
+    assertSame(route, dao.getRouteForId(routeId));
+    assertEquals("Renamed", route.getLongName());
+    assertSame(route, dao.getTripForId(trip.getId()).getRoute());
+
+    List<StopTime> stopTimes = dao.getStopTimesForTrip(trip);
+    assertEquals(3, stopTimes.size());
+    assertSame(trip, stopTimes.get(2).getTrip());
+    assertEquals(25 * 60, stopTimes.get(2).getArrivalTime());
+    assertEquals(43, dao.getAllStopTimes().size());
+
+    // A new calendar end date
+    replaceLine(path, "calendar.txt",
+        "weekdays,1,1,1,1,1,0,0,20090101,20500101",
+        "weekdays,1,1,1,1,1,0,0,20090101,20400101");
+
+    deltas = reloader.load(path);
+    assertEquals(1, deltas.size());
+    assertEquals("calendar.txt", deltas.get(0).getFilename());
+    assertEquals(new ServiceDate(2040, 1, 1), dao.getCalendarForServiceId(
+        new AgencyAndId("agency", "weekdays")).getEndDate());
+  }
+
+  /****
+   * Private Methods
+   ****/
+
+  private static void copyFeed(File source, File path) throws IOException {
+    for (File file : source.listFiles())
+      Files.copy(file.toPath(), new File(path, file.getName()).toPath());
+  }
+
+  private static void replaceLine(File path, String filename, String from,
+      String to) throws IOException {
+    File file = new File(path, filename);
+    List<String> lines = Files.readAllLines(file.toPath(), UTF8);
+    int index = lines.indexOf(from);
+    assertTrue(index != -1);
+    lines.set(index, to);
+    Files.write(file.toPath(), lines, UTF8);
+  }
+
+  private static void deleteFileRecursively(File file) {
+
+    if (!file.exists())
+      return;
+
+    if (file.isDirectory()) {
+      File[] files = file.listFiles();
+      if (files != null) {
+        for (File child : files)
+          deleteFileRecursively(child);
+      }
+    }
+
+    file.delete();
+  }
+}
@@ -0,0 +1,73 @@
+package org.onebusaway.gtfs.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+import org.onebusaway.gtfs.serialization.GtfsMultiFeedReader.EAgencyIdCollisionPolicy;
+
+public class GtfsMultiFeedReaderTest {
+
+  @Test
+  public void testPrefixCollidingAgencyIds() throws IOException {
+
+    File path = GtfsTestData.getTestAgencyGtfs();
+
+    GtfsMultiFeedReader reader = new GtfsMultiFeedReader();
+    reader.setAgencyIdCollisionPolicy(EAgencyIdCollisionPolicy.PREFIX);
+    reader.addFeed("a", path);
+    reader.addFeed("b", path);
+    reader.addFeed("c", path).setAgencyIdPrefix("c-");
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    reader.setEntityStore(dao);
+    reader.run();
+
+    assertEquals(3, dao.getAllAgencies().size());
+    assertNotNull(dao.getAgencyForId("agency"));
+    assertNotNull(dao.getAgencyForId("b_agency"));
+    assertNotNull(dao.getAgencyForId("c-agency"));
+
+    Trip trip = dao.getTripForId(new AgencyAndId("b_agency", "1.1"));
+    assertSame(dao.getAgencyForId("b_agency"), trip.getRoute().getAgency());
+    assertEquals(3, dao.getStopTimesForTrip(trip).size());
+    assertSame(dao.getStopForId(new AgencyAndId("b_agency", "A")),
+        dao.getStopTimesForTrip(trip).get(0).getStop());
+
+    // Stop time ids are reassigned, so that none are lost to collisions
+    Set<Integer> ids = new HashSet<Integer>();
+    for (StopTime stopTime : dao.getAllStopTimes())
+      ids.add(stopTime.getId());
+    assertEquals(3 * 43, ids.size());
+    assertEquals(3 * 15, dao.getAllTrips().size());
+  }
+
+  @Test
+  public void testFailOnCollidingAgencyIds() throws IOException {
+
+    File path = GtfsTestData.getTestAgencyGtfs();
+
+    GtfsMultiFeedReader reader = new GtfsMultiFeedReader();
+    reader.addFeed("a", path);
+    reader.addFeed("b", path);
+
+    try {
+      reader.run();
+      fail();
+    } catch (AgencyIdCollisionException ex) {
+      assertEquals(0, reader.getEntityStore().getAllTrips().size());
+    }
+  }
+}
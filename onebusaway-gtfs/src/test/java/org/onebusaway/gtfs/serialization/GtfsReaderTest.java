@@ -4,16 +4,33 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipFile;
 
 import org.junit.Test;
 import org.onebusaway.gtfs.GtfsTestData;
+import org.onebusaway.gtfs.csv.CsvInputSource;
+import org.onebusaway.gtfs.csv.CsvValuePredicates;
+import org.onebusaway.gtfs.csv.FileCsvInputSource;
+import org.onebusaway.gtfs.csv.MappedFileCsvInputSource;
+import org.onebusaway.gtfs.csv.PrefetchingZipFileCsvInputSource;
+import org.onebusaway.gtfs.csv.StringPool;
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
 import org.onebusaway.gtfs.model.Agency;
 import org.onebusaway.gtfs.model.AgencyAndId;
@@ -34,6 +51,8 @@ import org.onebusaway.gtfs.services.GtfsRelationalDao;
 
 public class GtfsReaderTest {
 
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
   @Test
   public void testIslandTransit() throws IOException {
 
@@ -392,6 +411,489 @@ public class GtfsReaderTest {
     assertEquals("Saint Saëns - ZI Sud Est / Stade Rennais ZI Ouest",route.getLongName());
   }
 
+  @Test
+  public void testParallelRead() throws IOException {
+
+    File resourcePath = GtfsTestData.getCaltrainGtfs();
+    GtfsDao expected = processFeed(resourcePath, "Caltrain");
+
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId("Caltrain");
+    reader.setInputLocation(resourcePath);
+    reader.setParallelism(4);
+    reader.setParallelChunkSize(1024);
+
+    GtfsRelationalDaoImpl entityStore = new GtfsRelationalDaoImpl();
+    entityStore.setGenerateIds(true);
+    reader.setEntityStore(entityStore);
+
+    reader.run();
+    reader.close();
+
+    assertEquals(expected.getAllTrips().size(),
+        entityStore.getAllTrips().size());
+    assertEquals(expected.getAllShapePoints().size(),
+        entityStore.getAllShapePoints().size());
+
+    // Generated ids match, since entities are delivered in file order
+    Collection<StopTime> stopTimes = expected.getAllStopTimes();
+    assertEquals(stopTimes.size(), entityStore.getAllStopTimes().size());
+    for (StopTime stopTime : stopTimes) {
+      StopTime actual = entityStore.getStopTimeForId(stopTime.getId());
+      assertEquals(stopTime.getTrip().getId(), actual.getTrip().getId());
+      assertEquals(stopTime.getStop().getId(), actual.getStop().getId());
+      assertEquals(stopTime.getStopSequence(), actual.getStopSequence());
+      assertEquals(stopTime.getArrivalTime(), actual.getArrivalTime());
+    }
+  }
+
+  @Test
+  public void testFileParallelism() throws IOException {
+
+    File resourcePath = GtfsTestData.getCaltrainGtfs();
+    GtfsDao expected = processFeed(resourcePath, "Caltrain");
+
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId("Caltrain");
+    reader.setInputLocation(resourcePath);
+    reader.setFileParallelism(4);
+
+    Map<Class<?>, Set<Class<?>>> dependencies = reader.getEntityClassDependencies(reader.getEntityClasses());
+    assertEquals(0, dependencies.get(Agency.class).size());
+    assertEquals(Collections.<Class<?>> singleton(Agency.class),
+        dependencies.get(ShapePoint.class));
+    assertTrue(dependencies.get(StopTime.class).contains(Trip.class));
+    assertTrue(dependencies.get(StopTime.class).contains(Stop.class));
+
+    GtfsRelationalDaoImpl entityStore = new GtfsRelationalDaoImpl();
+    reader.setEntityStore(entityStore);
+    reader.run();
+
+    assertEquals(expected.getAllRoutes().size(),
+        entityStore.getAllRoutes().size());
+    assertEquals(expected.getAllTrips().size(),
+        entityStore.getAllTrips().size());
+    assertEquals(expected.getAllShapePoints().size(),
+        entityStore.getAllShapePoints().size());
+    assertEquals(expected.getAllStopTimes().size(),
+        entityStore.getAllStopTimes().size());
+    assertEquals(expected.getAllCalendarDates().size(),
+        entityStore.getAllCalendarDates().size());
+
+    for (StopTime stopTime : entityStore.getAllStopTimes()) {
+      Trip trip = stopTime.getTrip();
+      assertSame(entityStore.getTripForId(trip.getId()), trip);
+      assertSame(entityStore.getStopForId(stopTime.getStop().getId()),
+          stopTime.getStop());
+    }
+  }
+
+  @Test
+  public void testTripStopTimesHandler() throws IOException {
+
+    File source = GtfsTestData.getTestAgencyGtfs();
+    File path = File.createTempFile("GtfsReaderTest-", "");
+    path.delete();
+    path.mkdirs();
+
+    try {
+      // Reverse and rotate the stop times, so they are neither grouped by trip
+      // nor in stop sequence order, and pad the header names
+      for (File file : source.listFiles()) {
+        List<String> lines = Files.readAllLines(file.toPath(), UTF8);
+        if (file.getName().equals("stop_times.txt")) {
+          Collections.reverse(lines.subList(1, lines.size()));
+          Collections.rotate(lines.subList(1, lines.size()), 1);
+          lines.set(0, lines.get(0).replace(",", " , "));
+        }
+        Files.write(new File(path, file.getName()).toPath(), lines, UTF8);
+      }
+
+      for (File feed : new File[] {source, path}) {
+
+        GtfsReader reader = new GtfsReader();
+        reader.setDefaultAgencyId("agency");
+        reader.setInputLocation(feed);
+        reader.getStopTimesSorter().setMaxRowsInMemory(5);
+
+        final Map<Trip, List<StopTime>> stopTimesByTrip = new HashMap<Trip, List<StopTime>>();
+        reader.setTripStopTimesHandler(new TripStopTimesHandler() {
+          public void handleStopTimes(Trip trip, List<StopTime> stopTimes) {
+            assertNull(stopTimesByTrip.put(trip, stopTimes));
+          }
+        });
+
+        GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+        reader.setEntityStore(dao);
+        reader.run();
+
+        assertEquals(0, dao.getAllStopTimes().size());
+        assertEquals(15, stopTimesByTrip.size());
+
+        int count = 0;
+        for (Map.Entry<Trip, List<StopTime>> entry : stopTimesByTrip.entrySet()) {
+          int sequence = Integer.MIN_VALUE;
+          for (StopTime stopTime : entry.getValue()) {
+            assertSame(entry.getKey(), stopTime.getTrip());
+            assertTrue(stopTime.getStopSequence() > sequence);
+            sequence = stopTime.getStopSequence();
+            count++;
+          }
+        }
+        assertEquals(43, count);
+
+        List<StopTime> stopTimes = stopTimesByTrip.get(dao.getTripForId(new AgencyAndId(
+            "agency", "1.1")));
+        assertEquals(3, stopTimes.size());
+        assertEquals("A", stopTimes.get(0).getStop().getId().getId());
+        assertEquals("C", stopTimes.get(2).getStop().getId().getId());
+      }
+    } finally {
+      deleteFileRecursively(path);
+    }
+  }
+
+  @Test
+  public void testMappedFileInputSource() throws IOException {
+
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId("1");
+    reader.setInputSource(new MappedFileCsvInputSource(new File(
+        "src/test/resources/org/onebusaway/gtfs/bom-agency")));
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    reader.setEntityStore(dao);
+    reader.run();
+
+    Route route = dao.getRouteForId(new AgencyAndId("1", "02-88"));
+    assertEquals("La Poterie - Haut Sancé / Grand Quartier",
+        route.getLongName());
+
+    GtfsDao expected = processFeed(GtfsTestData.getTestAgencyGtfs(), "agency");
+
+    reader = new GtfsReader();
+    reader.setDefaultAgencyId("agency");
+    reader.setInputSource(new MappedFileCsvInputSource(
+        GtfsTestData.getTestAgencyGtfs()));
+    dao = new GtfsRelationalDaoImpl();
+    reader.setEntityStore(dao);
+    reader.run();
+
+    assertEquals(expected.getAllStops().size(), dao.getAllStops().size());
+    assertEquals(expected.getAllTrips().size(), dao.getAllTrips().size());
+    assertEquals(expected.getAllStopTimes().size(),
+        dao.getAllStopTimes().size());
+  }
+
+  @Test
+  public void testReadAhead() throws IOException {
+
+    File resourcePath = GtfsTestData.getCaltrainGtfs();
+    GtfsDao expected = processFeed(resourcePath, "Caltrain");
+
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId("Caltrain");
+    reader.setInputLocation(resourcePath);
+    reader.setReadAhead(true);
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    reader.setEntityStore(dao);
+    reader.run();
+    reader.close();
+
+    assertEquals(expected.getAllStopTimes().size(),
+        dao.getAllStopTimes().size());
+    assertEquals(expected.getAllTrips().size(), dao.getAllTrips().size());
+  }
+
+  @Test(timeout = 10000)
+  public void testReadAheadFailure() throws IOException {
+
+    final CsvInputSource source = new FileCsvInputSource(
+        GtfsTestData.getTestAgencyGtfs());
+
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId("agency");
+    reader.setReadAhead(true);
+    reader.setInputSource(new CsvInputSource() {
+
+      public boolean hasResource(String name) throws IOException {
+        return source.hasResource(name);
+      }
+
+      public InputStream getResource(String name) throws IOException {
+        if (name.equals("routes.txt"))
+          throw new IllegalStateException("source closed");
+        return source.getResource(name);
+      }
+
+      public void close() throws IOException {
+        source.close();
+      }
+    });
+    reader.setEntityStore(new GtfsRelationalDaoImpl());
+
+    // The failure of the background read surfaces, rather than leaving the
+    // reader waiting for the file forever
+    try {
+      reader.run();
+      fail();
+    } catch (Exception ex) {
+      Throwable cause = ex;
+      while (cause != null && !(cause instanceof IllegalStateException))
+        cause = cause.getCause();
+      assertNotNull(cause);
+      assertEquals("source closed", cause.getMessage());
+    }
+  }
+
+  @Test
+  public void testPrefetchingZipFileInputSource() throws IOException {
+
+    File resourcePath = GtfsTestData.getCaltrainGtfs();
+    GtfsDao expected = processFeed(resourcePath, "Caltrain");
+
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId("Caltrain");
+    reader.setInputSource(new PrefetchingZipFileCsvInputSource(new ZipFile(
+        resourcePath)));
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    reader.setEntityStore(dao);
+    reader.run();
+    reader.close();
+
+    assertEquals(expected.getAllShapePoints().size(),
+        dao.getAllShapePoints().size());
+    assertEquals(expected.getAllStopTimes().size(),
+        dao.getAllStopTimes().size());
+    assertEquals(expected.getAllFareRules().size(),
+        dao.getAllFareRules().size());
+  }
+
+  @Test
+  public void testStringPool() throws IOException {
+
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId("Caltrain");
+    reader.setInputLocation(GtfsTestData.getCaltrainGtfs());
+    reader.setStringPool(new StringPool());
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    reader.setEntityStore(dao);
+    reader.run();
+
+    Map<String, String> serviceIds = new HashMap<String, String>();
+    Map<String, String> headsigns = new HashMap<String, String>();
+    for (Trip trip : dao.getAllTrips()) {
+      assertSameAsFirst(serviceIds, trip.getServiceId().getId());
+      if (trip.getTripHeadsign() != null)
+        assertSameAsFirst(headsigns, trip.getTripHeadsign());
+    }
+    assertTrue(serviceIds.size() < dao.getAllTrips().size());
+  }
+
+  @Test
+  public void testProjection() throws IOException {
+
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId("agency");
+    reader.setInputLocation(GtfsTestData.getTestAgencyGtfs());
+    reader.setProjection(Stop.class, "name");
+    reader.setProjection(StopTime.class, "stopSequence");
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    reader.setEntityStore(dao);
+    reader.run();
+
+    Stop stop = dao.getStopForId(new AgencyAndId("agency", "A"));
+    assertEquals("A", stop.getName());
+    // Required, so always kept
+    assertEquals(40.0, stop.getLat(), 0.0);
+    // Not selected
+    assertEquals(0, stop.getWheelchairBoarding());
+
+    List<StopTime> stopTimes = dao.getStopTimesForTrip(dao.getTripForId(new AgencyAndId(
+        "agency", "1.1")));
+    assertFalse(stopTimes.isEmpty());
+    for (StopTime stopTime : stopTimes) {
+      assertNotNull(stopTime.getStop());
+      assertFalse(stopTime.isArrivalTimeSet());
+      assertFalse(stopTime.isDepartureTimeSet());
+    }
+    assertEquals(1, stopTimes.get(0).getStopSequence());
+  }
+
+  @Test
+  public void testRowPredicate() throws IOException {
+
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId("agency");
+    reader.setInputLocation(GtfsTestData.getTestAgencyGtfs());
+    reader.addRowPredicate(Route.class, "route_id",
+        CsvValuePredicates.in("1", "2"));
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    reader.setEntityStore(dao);
+    reader.run();
+
+    assertEquals(2, dao.getAllRoutes().size());
+    assertEquals(5, dao.getAllTrips().size());
+    assertEquals(15, dao.getAllStopTimes().size());
+    for (Trip trip : dao.getAllTrips())
+      assertTrue(trip.getRoute().getId().getId().matches("[12]"));
+
+    // Rejections cascade from routes to their trips
+    assertTrue(reader.getRejectedIds(Route.class).contains("3"));
+    assertTrue(reader.getRejectedIds(Trip.class).contains("3.1"));
+    assertFalse(reader.getRejectedIds(Trip.class).contains("1.1"));
+
+    // Unfiltered entity types are untouched
+    assertNotNull(dao.getStopForId(new AgencyAndId("agency", "A")));
+  }
+
+  @Test
+  public void testAgencyRowPredicate() throws IOException {
+
+    File source = GtfsTestData.getTestAgencyGtfs();
+    File path = File.createTempFile("GtfsReaderTest-", "");
+    path.delete();
+    path.mkdirs();
+
+    try {
+      // A second agency, which runs routes 6 and 7
+      for (File file : source.listFiles()) {
+        List<String> lines = Files.readAllLines(file.toPath(), UTF8);
+        if (file.getName().equals("agency.txt")) {
+          lines.add("other,Other Agency,http://other.example.com,America/New_York");
+        } else if (file.getName().equals("routes.txt")) {
+          for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String agencyId = i == 0 ? "agency_id"
+                : (line.startsWith("6") || line.startsWith("7") ? "other"
+                    : "agency");
+            lines.set(i, agencyId + "," + line);
+          }
+        }
+        Files.write(new File(path, file.getName()).toPath(), lines, UTF8);
+      }
+
+      GtfsReader reader = new GtfsReader();
+      reader.setDefaultAgencyId("agency");
+      reader.setInputLocation(path);
+      reader.addRowPredicate(Agency.class, "agency_id",
+          CsvValuePredicates.in("agency"));
+
+      GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+      reader.setEntityStore(dao);
+      reader.run();
+
+      assertEquals(1, dao.getAllAgencies().size());
+      assertEquals(5, dao.getAllRoutes().size());
+      assertEquals(11, dao.getAllTrips().size());
+      assertEquals(43 - 8, dao.getAllStopTimes().size());
+      for (StopTime stopTime : dao.getAllStopTimes())
+        assertEquals("agency",
+            stopTime.getTrip().getRoute().getAgency().getId());
+
+      // Rejections cascade from the agency to its routes and their trips
+      assertTrue(reader.getRejectedIds(Agency.class).contains("other"));
+      assertTrue(reader.getRejectedIds(Route.class).contains("6"));
+      assertTrue(reader.getRejectedIds(Trip.class).contains("7.2"));
+    } finally {
+      deleteFileRecursively(path);
+    }
+  }
+
+  @Test
+  public void testRejectedIdsAreScopedToOneRun() throws IOException {
+
+    File source = GtfsTestData.getTestAgencyGtfs();
+    File path = File.createTempFile("GtfsReaderTest-", "");
+    path.delete();
+    path.mkdirs();
+
+    try {
+      // A second feed that reuses the id of route 3, for a route the
+      // predicate accepts, along with its trips and stop times
+      for (String filename : new String[] {
+          "agency.txt", "routes.txt", "trips.txt", "stop_times.txt"}) {
+        List<String> lines = Files.readAllLines(
+            new File(source, filename).toPath(), UTF8);
+        List<String> feedLines = new ArrayList<String>();
+        feedLines.add(lines.get(0));
+        for (String line : lines.subList(1, lines.size())) {
+          if (filename.equals("agency.txt") || line.startsWith("3"))
+            feedLines.add(line);
+        }
+        if (filename.equals("routes.txt"))
+          feedLines.set(1, "3,Three,3,3");
+        Files.write(new File(path, filename).toPath(), feedLines, UTF8);
+      }
+
+      GtfsReader reader = new GtfsReader();
+      reader.setDefaultAgencyId("agency");
+      reader.addRowPredicate(Route.class, "route_short_name",
+          CsvValuePredicates.not(CsvValuePredicates.in("3")));
+
+      GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+      reader.setEntityStore(dao);
+
+      reader.setInputLocation(source);
+      reader.run();
+
+      assertEquals(6, dao.getAllRoutes().size());
+      assertEquals(13, dao.getAllTrips().size());
+      assertTrue(reader.getRejectedIds(Route.class).contains("3"));
+      assertTrue(reader.getRejectedIds(Trip.class).contains("3.1"));
+
+      reader.setInputLocation(path);
+      reader.run();
+
+      assertEquals(7, dao.getAllRoutes().size());
+      assertEquals(15, dao.getAllTrips().size());
+      assertEquals(43, dao.getAllStopTimes().size());
+
+      Trip trip = dao.getTripForId(new AgencyAndId("agency", "3.1"));
+      assertEquals("Three", trip.getRoute().getShortName());
+      assertEquals(4, dao.getStopTimesForTrip(trip).size());
+      assertTrue(reader.getRejectedIds(Route.class).isEmpty());
+      assertTrue(reader.getRejectedIds(Trip.class).isEmpty());
+    } finally {
+      deleteFileRecursively(path);
+    }
+  }
+
+  @Test
+  public void testEntityReferences() throws IOException {
+
+    GtfsReader reader = new GtfsReader();
+    reader.setDefaultAgencyId("agency");
+    reader.setInputLocation(GtfsTestData.getTestAgencyGtfs());
+
+    GtfsRelationalDaoImpl dao = new GtfsRelationalDaoImpl();
+    reader.setEntityStore(dao);
+    reader.run();
+
+    for (StopTime stopTime : dao.getAllStopTimes()) {
+      Trip trip = stopTime.getTrip();
+      assertSame(dao.getTripForId(trip.getId()), trip);
+      assertSame(dao.getStopForId(stopTime.getStop().getId()),
+          stopTime.getStop());
+    }
+
+    for (Trip trip : dao.getAllTrips())
+      assertSame(dao.getRouteForId(trip.getRoute().getId()), trip.getRoute());
+  }
+
+  private void assertSameAsFirst(Map<String, String> firstValues, String value) {
+    String first = firstValues.get(value);
+    if (first == null)
+      firstValues.put(value, value);
+    else
+      assertSame(first, value);
+  }
+
   private GtfsRelationalDao processFeed(File resourcePath, String agencyId)
       throws IOException {
 
@@ -417,4 +919,20 @@ public class GtfsReaderTest {
     }
     return null;
   }
+
+  private void deleteFileRecursively(File file) {
+
+    if (!file.exists())
+      return;
+
+    if (file.isDirectory()) {
+      File[] files = file.listFiles();
+      if (files != null) {
+        for (File child : files)
+          deleteFileRecursively(child);
+      }
+    }
+
+    file.delete();
+  }
 }
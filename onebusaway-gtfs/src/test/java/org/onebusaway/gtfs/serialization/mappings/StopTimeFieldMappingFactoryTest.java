@@ -0,0 +1,43 @@
+package org.onebusaway.gtfs.serialization.mappings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class StopTimeFieldMappingFactoryTest {
+
+  @Test
+  public void testGetStringAsSeconds() {
+    assertEquals(0, StopTimeFieldMappingFactory.getStringAsSeconds("0:00:00"));
+    assertEquals(8 * 3600 + 5 * 60 + 7,
+        StopTimeFieldMappingFactory.getStringAsSeconds("8:05:07"));
+    assertEquals(13 * 3600 + 30 * 60,
+        StopTimeFieldMappingFactory.getStringAsSeconds("13:30:00"));
+    assertEquals(25 * 3600 + 1,
+        StopTimeFieldMappingFactory.getStringAsSeconds("25:00:01"));
+
+    String[] invalid = {
+        "", "8:05", "123:00:00", "08:5:07", "08-05-07", "08:05:0a", " 8:05:07",
+        "-8:05:07"};
+    for (String value : invalid) {
+      try {
+        StopTimeFieldMappingFactory.getStringAsSeconds(value);
+        fail(value);
+      } catch (InvalidStopTimeException ex) {
+
+      }
+    }
+  }
+
+  @Test
+  public void testGetSecondsAsString() {
+    assertEquals("00:00:00", StopTimeFieldMappingFactory.getSecondsAsString(0));
+    assertEquals("08:05:07",
+        StopTimeFieldMappingFactory.getSecondsAsString(8 * 3600 + 5 * 60 + 7));
+    assertEquals("25:00:01",
+        StopTimeFieldMappingFactory.getSecondsAsString(25 * 3600 + 1));
+    assertEquals("100:00:00",
+        StopTimeFieldMappingFactory.getSecondsAsString(100 * 3600));
+  }
+}